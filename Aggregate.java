@@ -0,0 +1,148 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Count, sum, sum of squares, minimum and maximum of every channel over a span of time. Aggregates of
+ * consecutive spans are combined with {@link #add(Aggregate)}, which is how {@link AggregateStore} answers
+ * a long range from a few day, month and year buckets.
+ * <p>
+ * The channels are the MeasurementTable channels in real world values, plus dew point, heat index and wind chill.
+ */
+public class Aggregate {
+
+    public static final int DEW_POINT = MeasurementTable.CHANNELS;
+    public static final int HEAT_INDEX = MeasurementTable.CHANNELS + 1;
+    public static final int WIND_CHILL = MeasurementTable.CHANNELS + 2;
+    public static final int CHANNELS = MeasurementTable.CHANNELS + 3;
+
+    /**
+     * Size of an aggregate written with {@link #write(ByteBuffer)}
+     */
+    public static final int BYTES = 8 + CHANNELS * 4 * 8;
+
+    private long count;
+    private final double[] sums = new double[CHANNELS];
+    private final double[] sumsOfSquares = new double[CHANNELS];
+    private final double[] minimums = new double[CHANNELS];
+    private final double[] maximums = new double[CHANNELS];
+
+    public Aggregate() {
+        Arrays.fill(minimums, Double.POSITIVE_INFINITY);
+        Arrays.fill(maximums, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Adds one row of a table
+     *
+     * @param table the table
+     * @param row   the row to add
+     */
+    public void add(MeasurementTable table, int row) {
+        count++;
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            add(channel, MeasurementTable.getConverter(channel).convert(table.get(channel, row)));
+        }
+
+        short outsideTemp = table.get(MeasurementTable.OUTSIDE_TEMP, row);
+        short outsideHum = table.get(MeasurementTable.OUTSIDE_HUM, row);
+        add(DEW_POINT, ValueConverter.dewPoint(ValueConverter.temperature(outsideTemp), ValueConverter.humidity(outsideHum)));
+        add(HEAT_INDEX, ValueConverter.heatIndex(outsideTemp, outsideHum));
+        add(WIND_CHILL, ValueConverter.windChill(outsideTemp, table.get(MeasurementTable.WIND_SPEED, row)));
+    }
+
+    private void add(int channel, double value) {
+        sums[channel] += value;
+        sumsOfSquares[channel] += value * value;
+        if (value < minimums[channel]) minimums[channel] = value;
+        if (value > maximums[channel]) maximums[channel] = value;
+    }
+
+    /**
+     * Combines the aggregate of another span into this one
+     *
+     * @param other the aggregate to add
+     */
+    public void add(Aggregate other) {
+        count += other.count;
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            sums[channel] += other.sums[channel];
+            sumsOfSquares[channel] += other.sumsOfSquares[channel];
+            minimums[channel] = Math.min(minimums[channel], other.minimums[channel]);
+            maximums[channel] = Math.max(maximums[channel], other.maximums[channel]);
+        }
+    }
+
+    /**
+     * @return the number of measurements
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum(int channel) {
+        return sums[channel];
+    }
+
+    /**
+     * @return the mean, 0 if there are no measurements
+     */
+    public double getMean(int channel) {
+        return count > 0 ? sums[channel] / count : 0;
+    }
+
+    /**
+     * @return the lowest value, 0 if there are no measurements
+     */
+    public double getMin(int channel) {
+        return count > 0 ? minimums[channel] : 0;
+    }
+
+    /**
+     * @return the highest value, 0 if there are no measurements
+     */
+    public double getMax(int channel) {
+        return count > 0 ? maximums[channel] : 0;
+    }
+
+    /**
+     * @return the population standard deviation, 0 if there are no measurements
+     */
+    public double getStandardDeviation(int channel) {
+        return getStatistics(channel).getStandardDeviation();
+    }
+
+    /**
+     * @return the statistics of one channel, without median and mode
+     */
+    public StatisticsAccumulator getStatistics(int channel) {
+        return StatisticsAccumulator.of(count, sums[channel], sumsOfSquares[channel], minimums[channel], maximums[channel]);
+    }
+
+    /**
+     * Writes this aggregate as {@link #BYTES} bytes
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putLong(count);
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            buffer.putDouble(sums[channel]);
+            buffer.putDouble(sumsOfSquares[channel]);
+            buffer.putDouble(minimums[channel]);
+            buffer.putDouble(maximums[channel]);
+        }
+    }
+
+    /**
+     * Reads an aggregate written with {@link #write(ByteBuffer)}
+     */
+    public static Aggregate read(ByteBuffer buffer) {
+        Aggregate aggregate = new Aggregate();
+        aggregate.count = buffer.getLong();
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            aggregate.sums[channel] = buffer.getDouble();
+            aggregate.sumsOfSquares[channel] = buffer.getDouble();
+            aggregate.minimums[channel] = buffer.getDouble();
+            aggregate.maximums[channel] = buffer.getDouble();
+        }
+        return aggregate;
+    }
+}
@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.HashMap;
+
+/**
+ * Multi-resolution aggregates of the measurements in a {@link MeasurementStore}, so statistics like the mean,
+ * extremes and standard deviation of a long range do not need the measurements themselves.
+ * <p>
+ * Every finished day gets a bucket that is kept on disk, one file per year. Month and year buckets are combined
+ * from the day buckets in memory. A range is answered with whole year, month and day buckets, plus the records
+ * of the days at the edges that are only partly inside the range. A range of ten years costs about as much as
+ * a range of one day, once its days have been aggregated.
+ * <p>
+ * Days are aggregated the first time a range needs them. Finished days never change, so their buckets never expire.
+ * Today is the live tail, it is always read from its records.
+ * <p>
+ * File layout (big-endian): magic, version, channels, year (ints), then for every day of the year a presence
+ * byte followed by an {@link Aggregate}.
+ */
+public class AggregateStore {
+
+    public static final int MAGIC = 0x5753_4147; // "WSAG"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int DAYS = 366;
+
+    private final Path directory;
+    private final MeasurementStore store;
+    private final HashMap<Integer, Year> years = new HashMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * @param directory the directory to keep the aggregate files in
+     * @param store     the store the measurements are read from
+     */
+    public AggregateStore(Path directory, MeasurementStore store) {
+        this.directory = directory;
+        this.store = store;
+    }
+
+    /**
+     * Combines the measurements between the 2 dates and times
+     *
+     * @param begin the date and time of the first measurement
+     * @param end   the date and time of the last measurement
+     * @return the aggregate of all valid measurements, or null if a missing day could not be fetched
+     */
+    public Aggregate getBetween(LocalDateTime begin, LocalDateTime end) {
+        return getBetween(begin, end, new LoadProgress());
+    }
+
+    /**
+     * Combines the measurements between the 2 dates and times
+     *
+     * @param begin    the date and time of the first measurement
+     * @param end      the date and time of the last measurement
+     * @param progress receives the number of records downloaded for missing days, and can cancel the download
+     * @return the aggregate of all valid measurements, or null if a missing day could not be fetched or the
+     * load has been cancelled
+     */
+    public synchronized Aggregate getBetween(LocalDateTime begin, LocalDateTime end, LoadProgress progress) {
+        LocalDate today = LocalDate.now();
+        LocalDate first = begin.toLocalDate();
+        LocalDate last = end.toLocalDate();
+        if (last.isAfter(today))
+            last = today;
+
+        Aggregate result = new Aggregate();
+        if (first.isAfter(last))
+            return result;
+
+        // Days that are completely inside the range are answered from buckets, the edges from their records
+        LocalDate firstFull = begin.equals(first.atStartOfDay()) ? first : first.plusDays(1);
+        LocalDate lastFull = end.isBefore(LocalDateTime.of(last, LocalTime.of(23, 59, 59))) ? last.minusDays(1) : last;
+        if (!lastFull.isBefore(today))
+            lastFull = today.minusDays(1);
+
+        if (!firstFull.isAfter(lastFull)) {
+            if (!aggregate(firstFull, lastFull, progress))
+                return null;
+            addBuckets(result, firstFull, lastFull);
+        }
+
+        long beginSecond = begin.atZone(zone).toEpochSecond();
+        long endSecond = end.atZone(zone).toEpochSecond();
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            if (!day.isBefore(firstFull) && !day.isAfter(lastFull)) {
+                day = lastFull;
+                continue;
+            }
+            if (!store.storeDays(day, day, progress))
+                return null;
+            ByteBuffer records = store.map(day);
+            if (records == null)
+                return null;
+            result.add(aggregate(records, beginSecond, endSecond));
+        }
+        return result;
+    }
+
+    /**
+     * Makes sure every day in the range has a bucket, fetching the days that are not stored yet
+     *
+     * @return false if a day could not be fetched
+     */
+    private boolean aggregate(LocalDate first, LocalDate last, LoadProgress progress) {
+        boolean ok = true;
+        LocalDate runStart = null;
+        for (LocalDate day = first; !day.isAfter(last.plusDays(1)) && ok; day = day.plusDays(1)) {
+            boolean missing = !day.isAfter(last) && getYear(day.getYear()).get(day) == null;
+            if (missing && runStart == null) {
+                runStart = day;
+            } else if (!missing && runStart != null) {
+                ok = aggregateRun(runStart, day.minusDays(1), progress);
+                runStart = null;
+            }
+        }
+
+        for (Year year : years.values()) {
+            if (year.dirty)
+                save(year);
+        }
+        return ok;
+    }
+
+    private boolean aggregateRun(LocalDate first, LocalDate last, LoadProgress progress) {
+        if (!store.storeDays(first, last, progress))
+            return false;
+
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            ByteBuffer records = store.map(day);
+            if (records == null)
+                return false;
+            getYear(day.getYear()).put(day, aggregate(records, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        return true;
+    }
+
+    /**
+     * Adds the buckets of a range of days, using the largest buckets that fit
+     */
+    private void addBuckets(Aggregate result, LocalDate first, LocalDate last) {
+        LocalDate day = first;
+        while (!day.isAfter(last)) {
+            Year year = getYear(day.getYear());
+            LocalDate endOfYear = LocalDate.of(day.getYear(), 12, 31);
+            LocalDate endOfMonth = YearMonth.from(day).atEndOfMonth();
+
+            if (day.getDayOfYear() == 1 && !endOfYear.isAfter(last)) {
+                result.add(year.getTotal());
+                day = endOfYear.plusDays(1);
+            } else if (day.getDayOfMonth() == 1 && !endOfMonth.isAfter(last)) {
+                result.add(year.getMonth(day.getMonthValue()));
+                day = endOfMonth.plusDays(1);
+            } else {
+                result.add(year.get(day));
+                day = day.plusDays(1);
+            }
+        }
+    }
+
+    /**
+     * Aggregates the valid records within a time range
+     */
+    private static Aggregate aggregate(ByteBuffer records, long begin, long end) {
+        MeasurementTable table = new MeasurementTable(records.limit() / MeasurementStream.RECORD_SIZE);
+        for (int position = 0; position + MeasurementStream.RECORD_SIZE <= records.limit(); position += MeasurementStream.RECORD_SIZE) {
+            long timestamp = records.getLong(position + MeasurementStream.TIMESTAMP_OFFSET);
+            if (timestamp < begin || timestamp > end)
+                continue;
+            records.position(position);
+            table.add(records);
+        }
+        table.removeInvalid();
+
+        Aggregate aggregate = new Aggregate();
+        for (int row = 0; row < table.size(); row++) {
+            aggregate.add(table, row);
+        }
+        return aggregate;
+    }
+
+    private Year getYear(int number) {
+        Year year = years.get(number);
+        if (year == null) {
+            year = load(number);
+            years.put(number, year);
+        }
+        return year;
+    }
+
+    private Path getFile(int year) {
+        return directory.resolve("agg_" + year + ".bin");
+    }
+
+    private Year load(int number) {
+        Year year = new Year(number);
+        Path file = getFile(number);
+        if (!Files.exists(file))
+            return year;
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.limit() != HEADER_SIZE + DAYS * (1 + Aggregate.BYTES) || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getInt() != Aggregate.CHANNELS || buffer.getInt() != number)
+                return year;
+
+            for (int day = 0; day < DAYS; day++) {
+                boolean present = buffer.get() != 0;
+                Aggregate aggregate = Aggregate.read(buffer);
+                if (present)
+                    year.days[day] = aggregate;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return year;
+    }
+
+    private void save(Year year) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + DAYS * (1 + Aggregate.BYTES));
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(Aggregate.CHANNELS).putInt(year.number);
+        Aggregate empty = new Aggregate();
+        for (Aggregate day : year.days) {
+            buffer.put((byte) (day != null ? 1 : 0));
+            (day != null ? day : empty).write(buffer);
+        }
+
+        // Write a temporary file first, so an interrupted write never leaves a broken file behind
+        Path file = getFile(year.number);
+        try {
+            Path temp = Files.createTempFile(directory, "agg_" + year.number, ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            year.dirty = false;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The day buckets of one year, with the month and year buckets combined from them
+     */
+    private static class Year {
+        private final int number;
+        private final Aggregate[] days = new Aggregate[DAYS];
+        private final Aggregate[] months = new Aggregate[12];
+        private Aggregate total;
+        private boolean dirty;
+
+        private Year(int number) {
+            this.number = number;
+        }
+
+        private Aggregate get(LocalDate day) {
+            return days[day.getDayOfYear() - 1];
+        }
+
+        private void put(LocalDate day, Aggregate aggregate) {
+            days[day.getDayOfYear() - 1] = aggregate;
+            months[day.getMonthValue() - 1] = null;
+            total = null;
+            dirty = true;
+        }
+
+        /**
+         * Only valid when all days of the month have a bucket
+         */
+        private Aggregate getMonth(int month) {
+            if (months[month - 1] == null) {
+                Aggregate aggregate = new Aggregate();
+                YearMonth yearMonth = YearMonth.of(number, month);
+                for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+                    aggregate.add(get(yearMonth.atDay(day)));
+                }
+                months[month - 1] = aggregate;
+            }
+            return months[month - 1];
+        }
+
+        /**
+         * Only valid when all days of the year have a bucket
+         */
+        private Aggregate getTotal() {
+            if (total == null) {
+                Aggregate aggregate = new Aggregate();
+                for (int month = 1; month <= 12; month++) {
+                    aggregate.add(getMonth(month));
+                }
+                total = aggregate;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs AggregateStore against a local stub of the REST API, which answers every between request with one
+ * record per 10 minutes. Checks the aggregates against statistics calculated from the measurements, and
+ * compares the time of a ten year range with the time of a one day range.
+ */
+public class AggregateStoreTest {
+    private static final ZoneId zone = ZoneId.systemDefault();
+
+    public static void main(String[] args) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/between/", exchange -> {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            byte[] body = records(LocalDateTime.parse(parts[2]), LocalDateTime.parse(parts[3]));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        String host = "http://localhost:" + server.getAddress().getPort() + "/";
+
+        try {
+            Path directory = Files.createTempDirectory("ws-test");
+            MeasurementStore store = new MeasurementStore(directory, 7, 8, host);
+            AggregateStore aggregates = new AggregateStore(directory, store);
+
+            // Partial edges, whole days and a whole month
+            LocalDateTime begin = LocalDateTime.of(2023, 1, 27, 13, 5);
+            LocalDateTime end = LocalDateTime.of(2023, 3, 2, 7, 30);
+            compare(store.getBetween(begin, end), aggregates.getBetween(begin, end));
+
+            LocalDateTime tenYearsBegin = LocalDateTime.of(2013, 1, 1, 0, 0);
+            LocalDateTime tenYearsEnd = LocalDateTime.of(2022, 12, 31, 23, 59, 59);
+            long start = System.nanoTime();
+            aggregates.getBetween(tenYearsBegin, tenYearsEnd);
+            System.out.printf("Ten years, first time: %d ms\n", (System.nanoTime() - start) / 1_000_000);
+
+            // A new store has to read the buckets back from disk
+            aggregates = new AggregateStore(directory, store);
+            aggregates.getBetween(tenYearsBegin, tenYearsEnd);
+            for (int round = 0; round < 3; round++) {
+                start = System.nanoTime();
+                Aggregate tenYears = aggregates.getBetween(tenYearsBegin, tenYearsEnd);
+                long tenYearsTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                aggregates.getBetween(LocalDateTime.of(2020, 6, 1, 0, 0), LocalDateTime.of(2020, 6, 1, 23, 59, 59));
+                long oneDayTime = System.nanoTime() - start;
+                System.out.printf("Ten years: %.2f ms (%d records), one day: %.2f ms\n", tenYearsTime / 1e6, tenYears.getCount(), oneDayTime / 1e6);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void compare(MeasurementTable table, Aggregate aggregate) {
+        table.removeInvalid();
+        System.out.printf("Records: %d/%d\n", aggregate.getCount(), table.size());
+        int[] channels = {MeasurementTable.OUTSIDE_TEMP, MeasurementTable.BAROMETER, MeasurementTable.RAIN_RATE, MeasurementTable.WIND_SPEED};
+        for (int channel : channels) {
+            StatisticsAccumulator expected = StatisticsAccumulator.of(table.toDoubles(channel, MeasurementTable.getConverter(channel)));
+            StatisticsAccumulator actual = aggregate.getStatistics(channel);
+            System.out.printf("  channel %2d: mean %.6f/%.6f, min %.2f/%.2f, max %.2f/%.2f, std dev %.6f/%.6f\n", channel,
+                    actual.getMean(), expected.getMean(), actual.getMin(), expected.getMin(),
+                    actual.getMax(), expected.getMax(), actual.getStandardDeviation(), expected.getStandardDeviation());
+        }
+    }
+
+    private static byte[] records(LocalDateTime begin, LocalDateTime end) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Random random = new Random(begin.hashCode());
+        for (long second = begin.atZone(zone).toEpochSecond(); second <= end.atZone(zone).toEpochSecond(); second += 10 * 60) {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone);
+            double celsius = 10 + 8 * Math.sin(time.getDayOfYear() * 2 * Math.PI / 365) + 4 * Math.sin(time.getHour() * Math.PI / 12) + random.nextGaussian();
+            out.writeShort(29500 + random.nextInt(1000));
+            out.writeLong(second);
+            out.writeShort(700);
+            out.writeShort(45);
+            out.writeShort((short) Math.round((celsius * 1.8 + 32) * 10));
+            out.writeShort(60 + random.nextInt(40));
+            out.writeShort(random.nextInt(20));
+            out.writeShort(random.nextInt(15));
+            out.writeShort(random.nextInt(360));
+            out.writeShort(random.nextInt(10) < 8 ? 0 : random.nextInt(50));
+            out.writeShort(10);
+            out.writeShort(100);
+            out.writeShort(0);
+            out.writeShort(300);
+            out.writeShort(630);
+            out.writeShort(1745);
+            out.writeShort(1);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * One analytic of a period, calculated from its days one at a time. Any number of analytics run together
+ * in a single scan with {@link Analytics#scan(DailySummary, int, int, Analytic[])}, and analytics of
+ * consecutive ranges of days are merged with {@link #combine(Analytic)}, so they can also be kept up to
+ * date with new days.
+ *
+ * @param <A> the class of the analytic itself
+ * @param <R> the result
+ */
+public interface Analytic<A extends Analytic<A, R>, R> {
+
+    /**
+     * Adds one day
+     *
+     * @param summary the daily summary
+     * @param day     the index of the day in the summary, days are added in order
+     */
+    void accept(DailySummary summary, int day);
+
+    /**
+     * Merges the analytic of the days right after the days of this one
+     *
+     * @param later the analytic of the later days, it is not changed
+     * @return this analytic
+     */
+    A combine(A later);
+
+    /**
+     * @return the result of the days added so far
+     */
+    R finish();
+}
@@ -0,0 +1,364 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+
+/**
+ * Runs analytics over the days of a daily summary, and the analytics of the day level screens. Every
+ * analytic only looks at the day it is given, so all of them share the one loop over the days.
+ */
+public class Analytics {
+
+    /**
+     * Adds every day of the summary to all analytics, in one pass
+     */
+    public static void scan(DailySummary summary, Analytic<?, ?>... analytics) {
+        scan(summary, 0, summary.size(), analytics);
+    }
+
+    /**
+     * Adds a range of days of the summary to all analytics, in one pass
+     *
+     * @param summary   the daily summary
+     * @param from      the first day
+     * @param to        the day after the last day
+     * @param analytics the analytics to add the days to
+     */
+    public static void scan(DailySummary summary, int from, int to, Analytic<?, ?>... analytics) {
+        for (int day = from; day < to; day++) {
+            for (Analytic<?, ?> analytic : analytics) {
+                analytic.accept(summary, day);
+            }
+        }
+    }
+
+    /**
+     * The sum of the degree days, the difference between the average outside temperature of a day and
+     * {@link #REFERENCE_TEMP} when it is colder
+     */
+    public static class DegreeDays implements Analytic<DegreeDays, Double> {
+        public static final double REFERENCE_TEMP = 18.0;
+
+        private double degreeDays;
+
+        @Override
+        public void accept(DailySummary summary, int day) {
+            degreeDays += Math.max(REFERENCE_TEMP - summary.getMean(MeasurementTable.OUTSIDE_TEMP, day), 0);
+        }
+
+        @Override
+        public DegreeDays combine(DegreeDays later) {
+            degreeDays += later.degreeDays;
+            return this;
+        }
+
+        @Override
+        public Double finish() {
+            return degreeDays;
+        }
+    }
+
+    /**
+     * The number of days with an average outside temperature from 15 to 30 °C, an average rain rate below 5,
+     * an average wind speed of at most 5 and an average humidity below 80
+     */
+    public static class NiceWeather implements Analytic<NiceWeather, Integer> {
+        private int days;
+
+        @Override
+        public void accept(DailySummary summary, int day) {
+            double averageOutsideTemp = summary.getMean(MeasurementTable.OUTSIDE_TEMP, day);
+            if (averageOutsideTemp >= 15 && averageOutsideTemp <= 30 && summary.getMean(MeasurementTable.RAIN_RATE, day) < 5
+                    && summary.getMean(MeasurementTable.AVG_WIND_SPEED, day) <= 5 && summary.getMean(MeasurementTable.OUTSIDE_HUM, day) < 80) {
+                days++;
+            }
+        }
+
+        @Override
+        public NiceWeather combine(NiceWeather later) {
+            days += later.days;
+            return this;
+        }
+
+        @Override
+        public Integer finish() {
+            return days;
+        }
+    }
+
+    /**
+     * Whether there is a heatwave: at least 5 days in a row with a maximum temperature of 25 °C or higher,
+     * at least 3 of them 30 °C or higher
+     */
+    public static class HeatWave implements Analytic<HeatWave, Boolean> {
+        // Daily maximum temperatures of summer and tropical days in °C, and the days a heat wave needs
+        public static final double SUMMER_TEMP = 25;
+        public static final double TROPICAL_TEMP = 30;
+        public static final int SUMMER_DAYS = 5;
+        public static final int TROPICAL_DAYS = 3;
+
+        private boolean heatWave;
+        private boolean allSummer = true;
+        // The streak of summer days at the start and at the end of the days so far
+        private int leadingSummerDays;
+        private int leadingTropicalDays;
+        private int summerDays;
+        private int tropicalDays;
+
+        @Override
+        public void accept(DailySummary summary, int day) {
+            double maxTemp = summary.getMax(MeasurementTable.OUTSIDE_TEMP, day);
+            if (isSummerDay(maxTemp)) {
+                summerDays++;
+                if (isTropicalDay(maxTemp)) tropicalDays++;
+                check(summerDays, tropicalDays);
+            } else {
+                summerDays = 0;
+                tropicalDays = 0;
+                allSummer = false;
+            }
+            if (allSummer) {
+                leadingSummerDays = summerDays;
+                leadingTropicalDays = tropicalDays;
+            }
+        }
+
+        private void check(int summerDays, int tropicalDays) {
+            if (isHeatWave(summerDays, tropicalDays)) heatWave = true;
+        }
+
+        /**
+         * @param maxTemp the maximum temperature of a day in °C
+         */
+        public static boolean isSummerDay(double maxTemp) {
+            return maxTemp >= SUMMER_TEMP;
+        }
+
+        /**
+         * @param maxTemp the maximum temperature of a day in °C
+         */
+        public static boolean isTropicalDay(double maxTemp) {
+            return maxTemp >= TROPICAL_TEMP;
+        }
+
+        /**
+         * @param summerDays   the length of a streak of summer days in a row
+         * @param tropicalDays the number of tropical days in the streak
+         * @return whether the streak is a heat wave
+         */
+        public static boolean isHeatWave(int summerDays, int tropicalDays) {
+            return summerDays >= SUMMER_DAYS && tropicalDays >= TROPICAL_DAYS;
+        }
+
+        @Override
+        public HeatWave combine(HeatWave later) {
+            heatWave |= later.heatWave;
+            // The streak at the end of these days continues into the later days
+            int joinedSummerDays = summerDays + later.leadingSummerDays;
+            int joinedTropicalDays = tropicalDays + later.leadingTropicalDays;
+            check(joinedSummerDays, joinedTropicalDays);
+            if (allSummer) {
+                leadingSummerDays = joinedSummerDays;
+                leadingTropicalDays = joinedTropicalDays;
+            }
+            summerDays = later.allSummer ? joinedSummerDays : later.summerDays;
+            tropicalDays = later.allSummer ? joinedTropicalDays : later.tropicalDays;
+            allSummer &= later.allSummer;
+            return this;
+        }
+
+        @Override
+        public Boolean finish() {
+            return heatWave;
+        }
+    }
+
+    /**
+     * The highest outside temperature of every day
+     */
+    public static class MaxTemperatures implements Analytic<MaxTemperatures, ArrayList<Double>> {
+        private final ArrayList<Double> maxTemps = new ArrayList<>();
+
+        @Override
+        public void accept(DailySummary summary, int day) {
+            maxTemps.add(summary.getMax(MeasurementTable.OUTSIDE_TEMP, day));
+        }
+
+        @Override
+        public MaxTemperatures combine(MaxTemperatures later) {
+            maxTemps.addAll(later.maxTemps);
+            return this;
+        }
+
+        @Override
+        public ArrayList<Double> finish() {
+            return new ArrayList<>(maxTemps);
+        }
+    }
+
+    /**
+     * The first measurement with the largest difference between inside and outside temperature
+     */
+    public static class TempDifference implements Analytic<TempDifference, Period.DataObject> {
+        private boolean found;
+        private double difference;
+        private LocalDateTime dateTime;
+        private double outsideTemp;
+        private double insideTemp;
+
+        @Override
+        public void accept(DailySummary summary, int day) {
+            double difference = summary.getMax(DailySummary.TEMP_DIFFERENCE, day);
+            if (found && !(difference > this.difference)) return;
+
+            MeasurementTable table = summary.getTable();
+            int row = summary.getMaxRow(DailySummary.TEMP_DIFFERENCE, day);
+            found = true;
+            this.difference = difference;
+            dateTime = table.getDateStamp(row);
+            outsideTemp = ValueConverter.temperature(table.get(MeasurementTable.OUTSIDE_TEMP, row));
+            insideTemp = ValueConverter.temperature(table.get(MeasurementTable.INSIDE_TEMP, row));
+        }
+
+        @Override
+        public TempDifference combine(TempDifference later) {
+            if (later.found && (!found || later.difference > difference)) {
+                found = true;
+                difference = later.difference;
+                dateTime = later.dateTime;
+                outsideTemp = later.outsideTemp;
+                insideTemp = later.insideTemp;
+            }
+            return this;
+        }
+
+        /**
+         * @return the measurement, null if there are no days
+         */
+        @Override
+        public Period.DataObject finish() {
+            return found ? new Period.DataObject(dateTime, difference, outsideTemp, insideTemp) : null;
+        }
+    }
+
+    /**
+     * The first day with the largest difference between outside temperature and wind chill
+     */
+    public static class MaxDiff implements Analytic<MaxDiff, Period.DataObject> {
+        private LocalDate firstDay;
+        private LocalDate day;
+        private double highestDiff;
+
+        @Override
+        public void accept(DailySummary summary, int day) {
+            if (firstDay == null) firstDay = summary.getDay(day);
+            double diff = summary.getMax(DailySummary.CHILL_DIFFERENCE, day);
+            if (diff > highestDiff) {
+                highestDiff = diff;
+                this.day = summary.getDay(day);
+            }
+        }
+
+        @Override
+        public MaxDiff combine(MaxDiff later) {
+            if (firstDay == null) firstDay = later.firstDay;
+            if (later.highestDiff > highestDiff) {
+                highestDiff = later.highestDiff;
+                day = later.day;
+            }
+            return this;
+        }
+
+        /**
+         * @return the day, the first day if no difference is above 0. null if there are no days
+         */
+        @Override
+        public Period.DataObject finish() {
+            if (firstDay == null) return null;
+            return new Period.DataObject(day != null ? day : firstDay, highestDiff);
+        }
+    }
+
+    /**
+     * The name of the month with the most rain, the months of all years added together
+     */
+    public static class MonthWithMostRain implements Analytic<MonthWithMostRain, String> {
+        private final double[] months = new double[12];
+        private int days;
+
+        @Override
+        public void accept(DailySummary summary, int day) {
+            months[summary.getDay(day).getMonthValue() - 1] += summary.getSum(MeasurementTable.RAIN_RATE, day);
+            days++;
+        }
+
+        @Override
+        public MonthWithMostRain combine(MonthWithMostRain later) {
+            for (int i = 0; i < months.length; i++) {
+                months[i] += later.months[i];
+            }
+            days += later.days;
+            return this;
+        }
+
+        /**
+         * @return the month, like "March". Empty if there are no days
+         */
+        @Override
+        public String finish() {
+            if (days < 1) return "";
+
+            int highestMonth = 0;
+            for (int i = 0; i < months.length; i++) {
+                if (months[highestMonth] < months[i]) highestMonth = i;
+            }
+            String month = Month.of(highestMonth + 1).name().toLowerCase();
+            return month.replaceFirst(".", (month.charAt(0) + "").toUpperCase());
+        }
+    }
+
+    /**
+     * The first day with the earliest or latest time of sunrise or sunset
+     */
+    public static class SunTime implements Analytic<SunTime, Period.DataObject> {
+        private final int channel;
+        private final boolean earliest;
+        private LocalDate day;
+        private double time;
+
+        /**
+         * @param channel  SUNRISE or SUNSET
+         * @param earliest true for the earliest time, false for the latest
+         */
+        public SunTime(int channel, boolean earliest) {
+            this.channel = channel;
+            this.earliest = earliest;
+        }
+
+        @Override
+        public void accept(DailySummary summary, int day) {
+            double time = earliest ? summary.getMin(channel, day) : summary.getMax(channel, day);
+            if (this.day == null || (earliest ? time < this.time : time > this.time)) {
+                this.day = summary.getDay(day);
+                this.time = time;
+            }
+        }
+
+        @Override
+        public SunTime combine(SunTime later) {
+            if (later.day != null && (day == null || (earliest ? later.time < time : later.time > time))) {
+                day = later.day;
+                time = later.time;
+            }
+            return this;
+        }
+
+        /**
+         * @return the day and time, null if there are no days
+         */
+        @Override
+        public Period.DataObject finish() {
+            return day != null ? new Period.DataObject(day, ValueConverter.sunSetRise((short) time)) : null;
+        }
+    }
+}
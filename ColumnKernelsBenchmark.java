@@ -0,0 +1,99 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Random;
+
+import simd.ColumnKernels;
+
+/**
+ * Compares the statistics of a year of outside temperatures, one measurement per minute, calculated with a
+ * getter loop over Measurement objects, with the scalar kernels and with the SIMD kernels. The SIMD kernels
+ * are only available when simd is compiled and run with {@code --add-modules jdk.incubator.vector}.
+ */
+public class ColumnKernelsBenchmark {
+    private static final int VALUES = 365 * 24 * 60;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+
+    private static double sink;
+
+    public static void main(String[] args) {
+        MeasurementTable table = new MeasurementTable(VALUES);
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++) {
+            double celsius = 10 + 10 * Math.sin(i * 2 * Math.PI / VALUES) + 5 * Math.sin(i * 2 * Math.PI / (24 * 60)) + 2 * random.nextGaussian();
+            RawMeasurement raw = new RawMeasurement();
+            raw.setStationId("1");
+            raw.setDateStamp(LocalDateTime.of(2023, 1, 1, 0, 0).plusMinutes(i));
+            raw.setOutsideTemp((short) Math.round((celsius * 1.8 + 32) * 10));
+            table.add(raw);
+        }
+        ArrayList<Measurement> measurements = new ArrayList<>(VALUES);
+        for (int row = 0; row < VALUES; row++) {
+            measurements.add(new Measurement(table.getRawMeasurement(row)));
+        }
+        short[] column = table.getColumn(MeasurementTable.OUTSIDE_TEMP);
+
+        ColumnKernels scalar = ColumnKernels.scalar();
+        ColumnKernels best = ColumnKernels.get();
+        System.out.println("SIMD kernels available: " + best.isVectorized());
+
+        StatisticsAccumulator expected = getterLoop(measurements);
+        StatisticsAccumulator actual = table.getStatistics(MeasurementTable.OUTSIDE_TEMP);
+        System.out.printf("mean %.9f/%.9f, min %.4f/%.4f, max %.4f/%.4f, std dev %.9f/%.9f\n",
+                expected.getMean(), actual.getMean(), expected.getMin(), actual.getMin(),
+                expected.getMax(), actual.getMax(), expected.getStandardDeviation(), actual.getStandardDeviation());
+
+        double[] result = new double[ColumnKernels.RESULT_SIZE];
+        double[] out = new double[VALUES];
+        for (int round = 0; round < 2; round++) {
+            System.out.printf("Statistics  getter loop %6.3f ms, scalar %6.3f ms, SIMD %6.3f ms\n",
+                    run(() -> sink += getterLoop(measurements).getStandardDeviation()),
+                    run(() -> {
+                        scalar.reduce(column, 0, VALUES, result);
+                        sink += result[ColumnKernels.SUM_OF_SQUARES];
+                    }),
+                    run(() -> {
+                        best.reduce(column, 0, VALUES, result);
+                        sink += result[ColumnKernels.SUM_OF_SQUARES];
+                    }));
+            System.out.printf("Conversion  getter loop %6.3f ms, scalar %6.3f ms, SIMD %6.3f ms\n",
+                    run(() -> {
+                        for (int i = 0; i < VALUES; i++) {
+                            out[i] = measurements.get(i).getOutsideTemp();
+                        }
+                        sink += out[0];
+                    }),
+                    run(() -> {
+                        scalar.convert(column, VALUES, 1 / 18.0, -32 / 1.8, out);
+                        sink += out[0];
+                    }),
+                    run(() -> {
+                        best.convert(column, VALUES, 1 / 18.0, -32 / 1.8, out);
+                        sink += out[0];
+                    }));
+        }
+        System.out.printf("checksum %.3f\n", sink);
+    }
+
+    /**
+     * The statistics the way they were calculated from the measurements of a period
+     */
+    private static StatisticsAccumulator getterLoop(ArrayList<Measurement> measurements) {
+        StatisticsAccumulator statistics = new StatisticsAccumulator();
+        for (Measurement measurement : measurements) {
+            statistics.accept(measurement.getOutsideTemp());
+        }
+        return statistics;
+    }
+
+    private static double run(Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
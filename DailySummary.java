@@ -0,0 +1,197 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Rollup of a MeasurementTable with one row per day. For every channel it keeps the sum, minimum and maximum
+ * of the real world values of that day, and the table rows the minimum and maximum were measured in. Day level
+ * analytics can run on these rows instead of on every measurement.
+ * <p>
+ * The channels are the MeasurementTable channels, plus 2 derived channels. Sunrise and sunset are kept as
+ * their raw hhmm value, which orders the same way as the time itself.
+ */
+public class DailySummary {
+
+    /**
+     * Absolute difference between inside and outside temperature, in °C
+     */
+    public static final int TEMP_DIFFERENCE = MeasurementTable.CHANNELS;
+
+    /**
+     * Absolute difference between outside temperature and wind chill, in °C
+     */
+    public static final int CHILL_DIFFERENCE = MeasurementTable.CHANNELS + 1;
+
+    public static final int CHANNELS = MeasurementTable.CHANNELS + 2;
+
+    private final ZoneRules rules = ZoneId.systemDefault().getRules();
+    private final LocalDate[] days;
+    private final int[] counts;
+    private final double[][] sums;
+    private final double[][] minimums;
+    private final double[][] maximums;
+    private final int[][] minimumRows;
+    private final int[][] maximumRows;
+    private int size;
+
+    private final MeasurementTable table;
+    private final short[][] columns = new short[MeasurementTable.CHANNELS][];
+    private final MeasurementTable.Converter[] converters = new MeasurementTable.Converter[MeasurementTable.CHANNELS];
+    // The first table row of every day, and the row after the last day
+    private final int[] firstRows;
+
+    /**
+     * Builds the rollup with a single pass over the table
+     *
+     * @param table the measurements, in timestamp order
+     */
+    public DailySummary(MeasurementTable table) {
+        this(table, false);
+    }
+
+    /**
+     * Builds the rollup with a single pass over the table
+     *
+     * @param table    the measurements, in timestamp order
+     * @param parallel true to summarize the days on all cores. Every day is summarized by one thread in
+     *                 row order, so the result is the same as the sequential one
+     */
+    public DailySummary(MeasurementTable table, boolean parallel) {
+        this.table = table;
+        int capacity = 0;
+        if (table.size() > 0)
+            capacity = (int) (getEpochDay(table.getEpochSecond(table.size() - 1)) - getEpochDay(table.getEpochSecond(0)) + 1);
+
+        days = new LocalDate[capacity];
+        counts = new int[capacity];
+        sums = new double[CHANNELS][capacity];
+        minimums = new double[CHANNELS][capacity];
+        maximums = new double[CHANNELS][capacity];
+        minimumRows = new int[CHANNELS][capacity];
+        maximumRows = new int[CHANNELS][capacity];
+
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            columns[channel] = table.getColumn(channel);
+            converters[channel] = MeasurementTable.getConverter(channel);
+        }
+
+        // Only the timestamps are read to find the days, the columns are read per day
+        firstRows = new int[capacity + 1];
+        long currentDay = Long.MIN_VALUE;
+        int day = -1;
+        for (int row = 0; row < table.size(); row++) {
+            long epochDay = getEpochDay(table.getEpochSecond(row));
+            if (epochDay != currentDay) {
+                currentDay = epochDay;
+                day++;
+                days[day] = LocalDate.ofEpochDay(epochDay);
+                firstRows[day] = row;
+            }
+        }
+        size = day + 1;
+        firstRows[size] = table.size();
+
+        if (parallel) {
+            IntStream.range(0, size).parallel().forEach(this::summarize);
+        } else {
+            for (day = 0; day < size; day++) {
+                summarize(day);
+            }
+        }
+    }
+
+    private void summarize(int day) {
+        double[] values = new double[CHANNELS];
+        for (int row = firstRows[day]; row < firstRows[day + 1]; row++) {
+            for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+                values[channel] = converters[channel].convert(columns[channel][row]);
+            }
+            values[TEMP_DIFFERENCE] = Math.abs(values[MeasurementTable.INSIDE_TEMP] - values[MeasurementTable.OUTSIDE_TEMP]);
+            values[CHILL_DIFFERENCE] = Math.abs(values[MeasurementTable.OUTSIDE_TEMP]
+                    - ValueConverter.windChill(columns[MeasurementTable.OUTSIDE_TEMP][row], columns[MeasurementTable.WIND_SPEED][row]));
+
+            boolean first = counts[day] == 0;
+            counts[day]++;
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                double value = values[channel];
+                sums[channel][day] += value;
+                if (first || value < minimums[channel][day]) {
+                    minimums[channel][day] = value;
+                    minimumRows[channel][day] = row;
+                }
+                if (first || value > maximums[channel][day]) {
+                    maximums[channel][day] = value;
+                    maximumRows[channel][day] = row;
+                }
+            }
+        }
+    }
+
+    private long getEpochDay(long epochSecond) {
+        // The offset of the timestamp itself, days around a DST change are not 24 hours long
+        int offset = rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        return Math.floorDiv(epochSecond + offset, 24 * 60 * 60);
+    }
+
+    /**
+     * @return the number of days with measurements
+     */
+    public int size() {
+        return size;
+    }
+
+    public LocalDate getDay(int day) {
+        return days[day];
+    }
+
+    /**
+     * @return the days with measurements, in order
+     */
+    public LocalDate[] getDays() {
+        return Arrays.copyOf(days, size);
+    }
+
+    /**
+     * @return the measurements this summary was built from, the rows refer to this table
+     */
+    public MeasurementTable getTable() {
+        return table;
+    }
+
+    public int getCount(int day) {
+        return counts[day];
+    }
+
+    public double getSum(int channel, int day) {
+        return sums[channel][day];
+    }
+
+    public double getMean(int channel, int day) {
+        return sums[channel][day] / counts[day];
+    }
+
+    public double getMin(int channel, int day) {
+        return minimums[channel][day];
+    }
+
+    public double getMax(int channel, int day) {
+        return maximums[channel][day];
+    }
+
+    /**
+     * @return the table row of the first measurement with the lowest value of the day
+     */
+    public int getMinRow(int channel, int day) {
+        return minimumRows[channel][day];
+    }
+
+    /**
+     * @return the table row of the first measurement with the highest value of the day
+     */
+    public int getMaxRow(int channel, int day) {
+        return maximumRows[channel][day];
+    }
+}
@@ -1,14 +1,18 @@
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.text.ParseException;
-import java.time.Instant;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 public class DatabaseConnection {
@@ -27,11 +31,35 @@ public class DatabaseConnection {
 		}
 	}
 
+	private static final MeasurementStore store = new MeasurementStore(Paths.get(getCacheDir()));
+	private static final AggregateStore aggregates = new AggregateStore(Paths.get(getCacheDir()), store);
+
+	private static Duration connectTimeout = Duration.ofSeconds(5);
+	private static Duration readTimeout = Duration.ofSeconds(60);
+	private static HttpClient client;
+
+	// Closes response bodies that stop sending data, a blocked read then fails instead of waiting forever
+	private static final ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "read-timeout");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		// Streams that are closed take their check out of the queue right away
+		watchdog.setRemoveOnCancelPolicy(true);
+	}
+
 	/**
 	 * @return the most recent measurement from the database
 	 */
 	public static RawMeasurement getMostRecentMeasurement() {
-		return buildMeasurement(new DataInputStream(buildStream(host + "last/bin")));
+		try (MeasurementStream stream = new MeasurementStream(buildStream(host + "last/bin"))) {
+			return stream.hasNext() ? stream.next() : null;
+		} catch (DatabaseException e) {
+			e.printStackTrace();
+		}
+		return null;
 	}
 
 	/**
@@ -64,7 +92,84 @@ public class DatabaseConnection {
 	 * @return the arraylist of raw measurements
 	 */
 	public static ArrayList<RawMeasurement> getMeasurementsBetween(LocalDateTime begin, LocalDateTime end) {
-		return getMeasurements(host + "between/" + begin + "/" + end + "/bin");
+		return toList(getTableBetween(begin, end));
+	}
+
+	/**
+	 * Returns a column oriented table of raw measurements, between the 2 dates and times given as parameters.
+	 * Days that have been fetched before are read from the local store, only missing days are downloaded.
+	 *
+	 * @param begin the date and time of the first measurement
+	 * @param end   the date and time of the last measurement
+	 * @return the table of raw measurements, or null if the database could not be reached
+	 */
+	public static MeasurementTable getTableBetween(LocalDateTime begin, LocalDateTime end) {
+		return store.getBetween(begin, end);
+	}
+
+	/**
+	 * Returns a column oriented table of raw measurements, between the 2 dates and times given as parameters.
+	 *
+	 * @param begin    the date and time of the first measurement
+	 * @param end      the date and time of the last measurement
+	 * @param progress receives the number of records decoded, and can cancel the load
+	 * @return the table of raw measurements, or null if the database could not be reached
+	 * @throws java.util.concurrent.CancellationException if the load has been cancelled
+	 */
+	public static MeasurementTable getTableBetween(LocalDateTime begin, LocalDateTime end, LoadProgress progress) {
+		return store.getBetween(begin, end, progress);
+	}
+
+	/**
+	 * Returns count, sum, extremes and spread of all valid measurements between the 2 dates and times given as
+	 * parameters, combined from stored day, month and year buckets
+	 *
+	 * @param begin the date and time of the first measurement
+	 * @param end   the date and time of the last measurement
+	 * @return the aggregate of the measurements, or null if the database could not be reached
+	 */
+	public static Aggregate getAggregateBetween(LocalDateTime begin, LocalDateTime end) {
+		return aggregates.getBetween(begin, end);
+	}
+
+	/**
+	 * Returns count, sum, extremes and spread of all valid measurements between the 2 dates and times given as
+	 * parameters, downloading the days that are not stored yet
+	 *
+	 * @param begin    the date and time of the first measurement
+	 * @param end      the date and time of the last measurement
+	 * @param progress receives the number of records downloaded, and can cancel the download
+	 * @return the aggregate of the measurements, or null if the database could not be reached or the load has been cancelled
+	 */
+	public static Aggregate getAggregateBetween(LocalDateTime begin, LocalDateTime end, LoadProgress progress) {
+		return aggregates.getBetween(begin, end, progress);
+	}
+
+	/**
+	 * Streams the raw measurements between the 2 dates and times given as parameters straight from the
+	 * REST API, bypassing the local store. Records are decoded while they arrive, so the caller never
+	 * has to hold the complete list in memory. The stream should be closed when the caller stops reading early.
+	 *
+	 * @param begin the date and time of the first measurement
+	 * @param end   the date and time of the last measurement
+	 * @return a stream of raw measurements
+	 * @throws DatabaseException if the database could not be reached
+	 */
+	public static MeasurementStream streamMeasurementsBetween(LocalDateTime begin, LocalDateTime end) throws DatabaseException {
+		return streamMeasurementsBetween(host, begin, end);
+	}
+
+	/**
+	 * Streams the raw measurements between the 2 dates and times from the REST API at another address
+	 *
+	 * @param host  the base address of the REST API, ending with a slash
+	 * @param begin the date and time of the first measurement
+	 * @param end   the date and time of the last measurement
+	 * @return a stream of raw measurements
+	 * @throws DatabaseException if the database could not be reached
+	 */
+	static MeasurementStream streamMeasurementsBetween(String host, LocalDateTime begin, LocalDateTime end) throws DatabaseException {
+		return new MeasurementStream(buildStream(host + "between/" + begin + "/" + end + "/bin"));
 	}
 
 	/**
@@ -73,7 +178,7 @@ public class DatabaseConnection {
 	 * @return the arraylist of raw measurements
 	 */
 	public static ArrayList<RawMeasurement> getMeasurementsSince(LocalDateTime since) {
-		return getMeasurements(host + "between/" + since + "/" + LocalDateTime.now() + "/bin");
+		return getMeasurementsBetween(since, LocalDateTime.now());
 	}
 
 	/**
@@ -81,7 +186,7 @@ public class DatabaseConnection {
 	 * @return the arraylist of raw measurements
 	 */
 	public static ArrayList<RawMeasurement> getMeasurementsLastYear() {
-		return getMeasurements(host + "lastmonths/12/bin");
+		return getMeasurementsLastMonths(12);
 	}
 
 	/**
@@ -98,7 +203,8 @@ public class DatabaseConnection {
 	 * @return the arraylist of raw measurements
 	 */
 	public static ArrayList<RawMeasurement> getMeasurementsLastMonths(int months) {
-		return getMeasurements(host + "lastmonths/" + months + "/bin");
+		LocalDateTime now = LocalDateTime.now();
+		return getMeasurementsBetween(now.minusMonths(months), now);
 	}
 
 
@@ -116,7 +222,8 @@ public class DatabaseConnection {
 	 * @return the arraylist of raw measurements
 	 */
 	public static ArrayList<RawMeasurement> getMeasurementsLastDays(int days) {
-		return getMeasurements(host + "lastdays/" + days + "/bin");
+		LocalDateTime now = LocalDateTime.now();
+		return getMeasurementsBetween(now.minusDays(days), now);
 	}
 
 	/**
@@ -133,48 +240,24 @@ public class DatabaseConnection {
 	 * @return the arraylist of raw measurements
 	 */
 	public static ArrayList<RawMeasurement> getMeasurementsLastHours(int hours) {
-		return getMeasurements(host + "lasthours/" + hours + "/bin");
+		LocalDateTime now = LocalDateTime.now();
+		return getMeasurementsBetween(now.minusHours(hours), now);
 	}
 
 	/**
 	 * Builds up a list of measurements
 	 *
-	 * @param address the address (http or https protocol included) to call the REST API at
-	 * @return a list of raw measurements
+	 * @param table the table to convert
+	 * @return a list of raw measurements, or null if there is no table
 	 */
-	private static ArrayList<RawMeasurement> getMeasurements(String address) {
-		String cacheFile = getCacheDir() + buildCacheFileName(address) + ".bin";
-		if (Files.exists(Paths.get(cacheFile))) {
-			try {
-				return (ArrayList<RawMeasurement>) new ObjectInputStream(new BufferedInputStream(new FileInputStream(cacheFile))).readObject();
-			}catch(EOFException e)
-			{
-				//do nothiung
-			}
-			catch (IOException e) {
-				e.printStackTrace();
-			} catch (ClassNotFoundException e) {
-				e.printStackTrace();
-			}
-		}
-		try {
-
-			InputStream is = buildStream(address);
-			DataInputStream reader = new DataInputStream(is);
+	private static ArrayList<RawMeasurement> toList(MeasurementTable table) {
+		if (table == null)
+			return null;
 
-			ArrayList<RawMeasurement> measurements = new ArrayList<>();
-			while (true) {
-				RawMeasurement measurement = buildMeasurement(reader);
-				if (measurement == null)
-					break;
-				measurements.add(measurement);
-			}
-			new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile))).writeObject(measurements);
-			return measurements;
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		return null;
+		ArrayList<RawMeasurement> measurements = new ArrayList<>(table.size());
+		for (int row = 0; row < table.size(); row++)
+			measurements.add(table.getRawMeasurement(row));
+		return measurements;
 	}
 
 
@@ -183,89 +266,194 @@ public class DatabaseConnection {
 		return System.getProperty("java.io.tmpdir") + "/ws/";
 	}
 
-	private static String buildCacheFileName(String address) {
-		address = address.substring(host.length());
-		address = address.replace('/', '_');
-		address = address.replace(':', '_');
-		if (address.isEmpty())
-			return "";
-
-		address = (System.currentTimeMillis() / (1000 * 60 * 60)) + address;
-
-		return address;
+	/**
+	 * Sets the timeouts used for all requests. Replaces the shared client, so connections are only
+	 * reused between requests with the same settings.
+	 *
+	 * @param connect the maximum time to wait for a connection to the server
+	 * @param read    the maximum time to wait for the server to answer a request, and for every read of the answer
+	 */
+	public static synchronized void setTimeouts(Duration connect, Duration read) {
+		connectTimeout = connect;
+		readTimeout = read;
+		client = null;
 	}
 
+	/**
+	 * Returns the shared client. It keeps connections to the server alive between requests, so the
+	 * poll for the most recent measurement does not need a new TCP handshake every minute.
+	 */
+	private static synchronized HttpClient getClient() {
+		if (client == null) {
+			client = HttpClient.newBuilder()
+					.version(HttpClient.Version.HTTP_2)
+					.connectTimeout(connectTimeout)
+					.followRedirects(HttpClient.Redirect.NORMAL)
+					.build();
+		}
+		return client;
+	}
 
 	/**
 	 * Builds up a stream for an url. Handles gzip compression if available( it should be available)
 	 *
 	 * @param address the address (http or https protocol included) to call the REST API at
-	 * @return a JsonReader object on this address
+	 * @return a stream of the response body
+	 * @throws DatabaseException if the server could not be reached or did not answer with 200 OK
 	 */
-	private static InputStream buildStream(String address) {
+	private static InputStream buildStream(String address) throws DatabaseException {
+		HttpRequest request;
+		Duration timeout;
+		synchronized (DatabaseConnection.class) {
+			timeout = readTimeout;
+		}
 		try {
-			URL url = new URL(address);
-			HttpURLConnection con = (HttpURLConnection) url.openConnection();
-			con.setRequestMethod("GET");
-			con.setRequestProperty("Accept-Encoding", "gzip");
-			con.connect();
+			request = HttpRequest.newBuilder(URI.create(address))
+					.GET()
+					.header("Accept-Encoding", "gzip")
+					.timeout(timeout)
+					.build();
+		} catch (IllegalArgumentException e) {
+			throw new DatabaseException("Invalid address " + address, e);
+		}
 
+		HttpResponse<InputStream> response;
+		try {
+			response = getClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+		} catch (IOException e) {
+			throw new DatabaseException("Request to " + address + " failed", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DatabaseException("Request to " + address + " was interrupted", e);
+		}
+
+		InputStream body = new TimedInputStream(response.body(), timeout);
+		if (response.statusCode() != 200) {
+			try {
+				body.close();
+			} catch (IOException ignored) {
+			}
+			throw new DatabaseException("Request to " + address + " failed", response.statusCode());
+		}
 
-			if ("gzip".equals(con.getContentEncoding()))
-				return new BufferedInputStream(new GZIPInputStream(con.getInputStream()));
+		try {
+			if (response.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false))
+				return new BufferedInputStream(new GZIPInputStream(body));
 			else
-				return new BufferedInputStream(con.getInputStream());
+				return new BufferedInputStream(body);
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new DatabaseException("Invalid gzip response from " + address, e);
 		}
-		return null;
 	}
 
 	/**
-	 * Reads a raw raw measurement from a data inputstream
-	 * @param stream the datastream
-	 * @return one measurement, or null if no complete measurement can be read
+	 * A response body with a deadline on every read. HttpRequest.timeout only covers the wait for the response
+	 * headers, a body that stalls halfway would block its reader forever. Every read only moves the deadline,
+	 * a single watchdog task per stream checks it and closes the stream when a read has been waiting too long.
 	 */
-	private static RawMeasurement buildMeasurement(DataInputStream stream) {
-		try {
-			RawMeasurement measurement = new RawMeasurement();
-			measurement.setBarometer(stream.readShort());
-			measurement.setDateStamp(LocalDateTime.ofEpochSecond(stream.readLong(), 0, ZoneOffset.systemDefault().getRules().getOffset(Instant.now())));
-			measurement.setInsideTemp(stream.readShort());
-			measurement.setInsideHum(stream.readShort());
-			measurement.setOutsideTemp(stream.readShort());
-			measurement.setOutsideHum(stream.readShort());
-			measurement.setWindSpeed(stream.readShort());
-			measurement.setAvgWindSpeed(stream.readShort());
-			measurement.setWindDir(stream.readShort());
-			measurement.setRainRate(stream.readShort());
-			measurement.setUVLevel(stream.readShort());
-			measurement.setSolarRad(stream.readShort());
-			measurement.setXmitBatt(stream.readShort());
-			measurement.setBattLevel(stream.readShort());
-			measurement.setSunrise(stream.readShort());
-			measurement.setSunset(stream.readShort());
-
-			measurement.setStationId(stream.readShort() + "");
-			return measurement;
-		} catch (EOFException e) {
-			return null;
-		} catch (IOException e) {
-			e.printStackTrace();
+	private static class TimedInputStream extends FilterInputStream {
+		private final long timeout;
+		// System.nanoTime() at which the running read times out
+		private volatile long deadline;
+		private volatile boolean reading;
+		private volatile boolean timedOut;
+		private boolean closed;
+		private ScheduledFuture<?> check;
+
+		TimedInputStream(InputStream in, Duration timeout) {
+			super(in);
+			this.timeout = timeout.toNanos();
+			schedule(this.timeout);
 		}
 
-		return null;
-	}
+		@Override
+		public int read() throws IOException {
+			begin();
+			try {
+				return end(super.read());
+			} catch (IOException e) {
+				throw timedOut ? new DatabaseException("No data received for " + Duration.ofNanos(timeout), e) : e;
+			} finally {
+				reading = false;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			begin();
+			try {
+				return end(super.read(b, off, len));
+			} catch (IOException e) {
+				throw timedOut ? new DatabaseException("No data received for " + Duration.ofNanos(timeout), e) : e;
+			} finally {
+				reading = false;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			stop();
+			super.close();
+		}
+
+		private void begin() {
+			// The deadline is written first, so the watchdog never sees a read with the deadline of an older one
+			deadline = System.nanoTime() + timeout;
+			reading = true;
+		}
 
+		private int end(int result) {
+			// Nothing left to wait for at the end of the body
+			if (result < 0)
+				stop();
+			return result;
+		}
+
+		private synchronized void schedule(long delay) {
+			if (!closed)
+				check = watchdog.schedule(this::check, delay, TimeUnit.NANOSECONDS);
+		}
+
+		private synchronized void stop() {
+			closed = true;
+			if (check != null)
+				check.cancel(false);
+		}
+
+		private void check() {
+			boolean reading = this.reading;
+			long left = deadline - System.nanoTime();
+			if (!reading || left > 0) {
+				// Check again when the running read, or one that starts right now, would time out
+				schedule(reading ? left : timeout);
+				return;
+			}
+			timedOut = true;
+			stop();
+			try {
+				in.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
 
 	/**
-	 * Cleans the cache, only deletes old, expired cachefiles
+	 * Cleans the cache, only deletes old, expired cachefiles and unfinished temporary files. Files of finished
+	 * days never expire, the live tails of earlier hours are pruned by {@link MeasurementStore#pruneTails}.
 	 */
 	private static void cleanCache() {
 		try {
 			Files.list(Paths.get(getCacheDir())).forEach(file ->
 			{
 				try {
+					// Left behind by a store or aggregate writer that never finished, like after a crash
+					if (file.getFileName().toString().endsWith(".tmp")) {
+						Files.delete(file);
+						return;
+					}
+					if (MeasurementStore.isTail(file))
+						return;
 					int timestamp = ((Number) NumberFormat.getInstance().parse(file.getFileName().toString())).intValue();
 					long current = (System.currentTimeMillis() / (1000 * 60 * 60));
 					if (timestamp != current)
@@ -281,7 +469,7 @@ public class DatabaseConnection {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-
+		MeasurementStore.pruneTails(Paths.get(getCacheDir()), System.currentTimeMillis() / (1000 * 60 * 60));
 	}
 
 
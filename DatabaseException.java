@@ -0,0 +1,35 @@
+import java.io.IOException;
+
+/**
+ * Thrown when the REST API of the weather station database can not be reached or answers with an error
+ */
+public class DatabaseException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+
+	/**
+	 * @param message   a description of the failure
+	 * @param cause     the underlying exception
+	 */
+	public DatabaseException(String message, Throwable cause) {
+		super(message, cause);
+		this.statusCode = -1;
+	}
+
+	/**
+	 * @param message    a description of the failure
+	 * @param statusCode the HTTP status code the server answered with
+	 */
+	public DatabaseException(String message, int statusCode) {
+		super(message + " (HTTP " + statusCode + ")");
+		this.statusCode = statusCode;
+	}
+
+	/**
+	 * @return the HTTP status code, or -1 if the server could not be reached at all
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+}
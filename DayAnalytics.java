@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+
+/**
+ * The day level analytics of a period, calculated together in one pass over its daily summary. Period keeps
+ * one of these until its range or data changes, so opening a screen again does not calculate anything.
+ */
+public class DayAnalytics {
+    private final Analytics.DegreeDays degreeDays = new Analytics.DegreeDays();
+    private final Analytics.HeatWave heatWave = new Analytics.HeatWave();
+    private final Analytics.MaxTemperatures maxTemperatures = new Analytics.MaxTemperatures();
+    private final Analytics.NiceWeather niceWeather = new Analytics.NiceWeather();
+    private final Analytics.MaxDiff maxDiff = new Analytics.MaxDiff();
+    private final Analytics.TempDifference tempDifference = new Analytics.TempDifference();
+    private final Analytics.MonthWithMostRain monthWithMostRain = new Analytics.MonthWithMostRain();
+    private final Analytics.SunTime earliestSunrise = new Analytics.SunTime(MeasurementTable.SUNRISE, true);
+    private final Analytics.SunTime latestSunrise = new Analytics.SunTime(MeasurementTable.SUNRISE, false);
+    private final Analytics.SunTime earliestSunset = new Analytics.SunTime(MeasurementTable.SUNSET, true);
+    private final Analytics.SunTime latestSunset = new Analytics.SunTime(MeasurementTable.SUNSET, false);
+
+    /**
+     * @param summary the daily summary of the period
+     */
+    public DayAnalytics(DailySummary summary) {
+        Analytics.scan(summary, degreeDays, heatWave, maxTemperatures, niceWeather, maxDiff, tempDifference,
+                monthWithMostRain, earliestSunrise, latestSunrise, earliestSunset, latestSunset);
+    }
+
+    /**
+     * Merges the analytics of the days right after the days of these
+     *
+     * @param later the analytics of the later days, they are not changed
+     * @return these analytics
+     */
+    public DayAnalytics combine(DayAnalytics later) {
+        degreeDays.combine(later.degreeDays);
+        heatWave.combine(later.heatWave);
+        maxTemperatures.combine(later.maxTemperatures);
+        niceWeather.combine(later.niceWeather);
+        maxDiff.combine(later.maxDiff);
+        tempDifference.combine(later.tempDifference);
+        monthWithMostRain.combine(later.monthWithMostRain);
+        earliestSunrise.combine(later.earliestSunrise);
+        latestSunrise.combine(later.latestSunrise);
+        earliestSunset.combine(later.earliestSunset);
+        latestSunset.combine(later.latestSunset);
+        return this;
+    }
+
+    public double getDegreeDays() {
+        return degreeDays.finish();
+    }
+
+    public boolean hasHeatWave() {
+        return heatWave.finish();
+    }
+
+    /**
+     * @return the highest outside temperature of every day
+     */
+    public ArrayList<Double> getMaxTemperatures() {
+        return maxTemperatures.finish();
+    }
+
+    public int getNiceWeatherDays() {
+        return niceWeather.finish();
+    }
+
+    /**
+     * @return the day with the largest difference between outside temperature and wind chill, null if there are no measurements
+     */
+    public Period.DataObject getMaxDiff() {
+        return maxDiff.finish();
+    }
+
+    /**
+     * @return the measurement with the largest difference between inside and outside temperature, null if there are no measurements
+     */
+    public Period.DataObject getTempDifference() {
+        return tempDifference.finish();
+    }
+
+    /**
+     * @return the name of the month with the most rain, empty if there are no measurements
+     */
+    public String getMonthWithMostRain() {
+        return monthWithMostRain.finish();
+    }
+
+    /**
+     * @return the first day with the earliest sunrise, null if there are no measurements
+     */
+    public Period.DataObject getEarliestSunrise() {
+        return earliestSunrise.finish();
+    }
+
+    public Period.DataObject getLatestSunrise() {
+        return latestSunrise.finish();
+    }
+
+    public Period.DataObject getEarliestSunset() {
+        return earliestSunset.finish();
+    }
+
+    public Period.DataObject getLatestSunset() {
+        return latestSunset.finish();
+    }
+}
@@ -0,0 +1,58 @@
+import guiboard.DotMatrixDisplay;
+
+/**
+ * Times the pixel bookkeeping of the dot matrix display: clear, setPixel with and without changes, plotGraph
+ * and the flush of an unchanged frame. IO is not connected, so no instruction leaves the process and only the
+ * work of the display itself is measured.
+ */
+public class DotMatrixDisplayBenchmark {
+    private static final int WIDTH = 128;
+    private static final int HEIGHT = 32;
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 10000;
+
+    public static void main(String[] args) {
+        DotMatrixDisplay display = new DotMatrixDisplay((short) 0x42, (short) 0x40, HEIGHT, WIDTH);
+
+        for (int round = 0; round < 2; round++) {
+            System.out.printf("clear %8.3f us\n", run(display::clear));
+            System.out.printf("setPixel, every pixel changes %8.3f ns\n", run(() -> {
+                for (int state = 0; state < 2; state++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        for (int y = 0; y < HEIGHT; y++) {
+                            display.setPixel(x, y, state == 0);
+                        }
+                    }
+                }
+            }) / (2 * WIDTH * HEIGHT) * 1000);
+            System.out.printf("setPixel, nothing changes %8.3f ns\n", run(() -> {
+                for (int x = 0; x < WIDTH; x++) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        display.setPixel(x, y, false);
+                    }
+                }
+            }) / (WIDTH * HEIGHT) * 1000);
+            System.out.printf("plotGraph %8.3f us\n", run(() -> {
+                display.clearFrame();
+                display.plotGraph(Math::sin, 0.1, 10, 0.25);
+                display.clearFrame();
+                display.plotGraph(Math::cos, 0.1, 10, 0.25);
+            }) / 2);
+            System.out.printf("flush, nothing changes %8.3f us\n", run(display::flush));
+        }
+    }
+
+    /**
+     * @return the time of one operation in microseconds
+     */
+    private static double run(Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / 1e3 / ITERATIONS;
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Misra-Gries frequency sketch. Keeps at most a fixed number of counters, so the most frequent value of
+ * millions of values is found without a counter for every distinct value. Any value that occurs more than
+ * count / (counters + 1) times is guaranteed to have a counter, and every counter is at most that much too low.
+ * The reported mode is only meaningful when the most frequent value stands out by more than that error.
+ * Sketches of separate chunks or time buckets are merged into a sketch of all values.
+ * <p>
+ * Decrementing every counter is lazy: counters are stored with an offset that is raised instead, and
+ * counters that dropped to zero are only removed in one pass when a new value needs their room. Values that
+ * are almost all distinct, like derived values, cost the same as any other value.
+ */
+public class FrequencySketch {
+
+    public static final int DEFAULT_COUNTERS = 1024;
+
+    private final int counters;
+    private final double[] keys;
+    private final long[] counts;
+    private int size;
+    private long count;
+    // The real count of a counter is counts[i] - offset, counters at or below the offset are free
+    private long offset;
+    // Lowest counts[i] at the last compaction or insert, there is no free counter while the offset is below it
+    private long minimum;
+
+    // Open addressing index from key to counter, -1 for an empty slot
+    private final int[] index;
+    private final int shift;
+
+    public FrequencySketch() {
+        this(DEFAULT_COUNTERS);
+    }
+
+    /**
+     * @param counters the maximum number of values tracked, more counters give a smaller error
+     */
+    public FrequencySketch(int counters) {
+        this.counters = Math.max(counters, 1);
+        keys = new double[this.counters];
+        counts = new long[this.counters];
+        index = new int[Integer.highestOneBit(this.counters * 4 - 1) << 1];
+        Arrays.fill(index, -1);
+        shift = Long.numberOfLeadingZeros(index.length - 1);
+    }
+
+    /**
+     * Counts one value
+     */
+    public void accept(double value) {
+        count++;
+        int slot = find(value);
+        if (index[slot] >= 0) {
+            // Also brings a free counter back, with a count of one
+            counts[index[slot]] = Math.max(counts[index[slot]], offset) + 1;
+            return;
+        }
+        if (size == counters && offset >= minimum) {
+            compact();
+            slot = find(value);
+        }
+        if (size < counters) {
+            keys[size] = value;
+            counts[size] = offset + 1;
+            minimum = size == 0 ? offset + 1 : Math.min(minimum, offset + 1);
+            index[slot] = size++;
+        } else {
+            // No room for the value, it cancels one occurrence of every tracked value
+            offset++;
+        }
+    }
+
+    /**
+     * Adds the counts of another sketch to this one
+     *
+     * @param other the sketch to merge, it is not changed
+     * @return this sketch
+     */
+    public FrequencySketch merge(FrequencySketch other) {
+        HashMap<Double, Long> merged = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (counts[i] > offset)
+                merged.put(keys[i], counts[i] - offset);
+        }
+        for (int i = 0; i < other.size; i++) {
+            if (other.counts[i] > other.offset)
+                merged.merge(other.keys[i], other.counts[i] - other.offset, Long::sum);
+        }
+        count += other.count;
+
+        // Subtract the count of the first counter that does not fit, that keeps the error bound of both sketches
+        long subtract = 0;
+        if (merged.size() > counters) {
+            long[] sorted = merged.values().stream().mapToLong(Long::longValue).sorted().toArray();
+            subtract = sorted[sorted.length - counters - 1];
+        }
+        size = 0;
+        offset = 0;
+        minimum = Long.MAX_VALUE;
+        for (Map.Entry<Double, Long> entry : merged.entrySet()) {
+            if (entry.getValue() > subtract) {
+                keys[size] = entry.getKey();
+                counts[size] = entry.getValue() - subtract;
+                minimum = Math.min(minimum, counts[size++]);
+            }
+        }
+        rebuildIndex();
+        return this;
+    }
+
+    /**
+     * Removes the free counters and takes the offset out of the others
+     */
+    private void compact() {
+        int kept = 0;
+        minimum = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (counts[i] > offset) {
+                keys[kept] = keys[i];
+                counts[kept] = counts[i] - offset;
+                minimum = Math.min(minimum, counts[kept++]);
+            }
+        }
+        offset = 0;
+        if (kept != size) {
+            size = kept;
+            rebuildIndex();
+        }
+    }
+
+    private void rebuildIndex() {
+        Arrays.fill(index, -1);
+        for (int i = 0; i < size; i++) {
+            index[find(keys[i])] = i;
+        }
+    }
+
+    /**
+     * @return the slot of the value in the index, or the empty slot where it belongs
+     */
+    private int find(double value) {
+        long bits = Double.doubleToLongBits(value);
+        int mask = index.length - 1;
+        // Only the top bits of the product depend on all bits of the value, whole numbers differ in their high bits only
+        int slot = (int) ((bits * 0x9E3779B97F4A7C15L) >>> shift);
+        while (index[slot] >= 0 && Double.doubleToLongBits(keys[index[slot]]) != bits) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return the number of values counted
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the maximum difference between an estimated and the real count of a value
+     */
+    public long getMaxError() {
+        return count / (counters + 1);
+    }
+
+    /**
+     * @param value the value to look up
+     * @return the estimated number of occurrences, at most {@link #getMaxError()} too low
+     */
+    public long getEstimate(double value) {
+        int slot = find(value);
+        return index[slot] >= 0 ? Math.max(counts[index[slot]] - offset, 0) : 0;
+    }
+
+    /**
+     * @return the value with the highest estimated count, the lowest one if there are several. 0 if nothing has been counted
+     */
+    public double getMode() {
+        double mode = 0;
+        long highest = 0;
+        for (int i = 0; i < size; i++) {
+            long estimate = counts[i] - offset;
+            if (estimate > highest || (estimate == highest && estimate > 0 && keys[i] < mode)) {
+                highest = estimate;
+                mode = keys[i];
+            }
+        }
+        return mode;
+    }
+}
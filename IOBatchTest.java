@@ -0,0 +1,268 @@
+import guiboard.DotMatrixDisplay;
+import guiboard.IO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs the display against a local emulator of the guiboard server that counts round trips: the number of
+ * times it has answered everything it received and has to wait for the client again. Every round trip
+ * waits {@link #LATENCY} ms, like a remote emulator link. The emulator keeps the text and pixels of the
+ * display, to check that the display shows exactly what was drawn.
+ * <p>
+ * Scrolls down and up through the 19 entries of the statistics menu: redrawing the whole screen one write at
+ * a time, the way the menu used to, batched, and with the line diff of the display, blocking, pipelined and
+ * asynchronous. Also counts the instructions of flushing pixel frames, and checks that reads still see the
+ * writes before them.
+ */
+public class IOBatchTest {
+    private static final int LATENCY = 1;
+    private static final String[] STATISTICS = {"Buitentemperatuur", "Binnentemperatuur", "Bi. luchtvochtigheid",
+            "Bu. luchtvochtigheid", "Luchtdruk", "Windsnelheid", "Gem windsnelheid", "Windrichting", "Neerslag",
+            "UV-niveau", "Zonnestraling", "Xmit Batterij", "Batterij niveau", "Zonsopkomst", "Zonsondergang",
+            "Dauwpunt", "Hitte Index", "Gevoelstemperatuur", "Ga terug"};
+
+    private static final short[] memory = new short[1 << 16];
+    private static final boolean[][] pixels = new boolean[128][32];
+    private static final char[][] text = new char[3][21];
+    private static int textLine;
+    private static int textColumn;
+    private static boolean command;
+    private static volatile int roundTrips;
+    private static volatile int operations;
+    private static int waits;
+
+    public static void main(String[] args) throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        Thread emulator = new Thread(() -> serve(server));
+        emulator.setDaemon(true);
+        emulator.start();
+
+        IO.init("localhost", server.getLocalPort());
+        DotMatrixDisplay display = new DotMatrixDisplay((short) 0x42, (short) 0x40, 32, 128);
+        MenuItem statistics = menu(display);
+        int steps = 2 * (STATISTICS.length - 1);
+
+        for (int mode = 0; mode < 2; mode++) {
+            int trips = roundTrips;
+            int ops = operationsAfter();
+            long time = System.nanoTime();
+            for (int step = 0; step < steps; step++) {
+                int selected = step < STATISTICS.length - 1 ? step + 1 : steps - step - 1;
+                if (mode == 1) IO.beginBatch();
+                IO.writeShort(0x40, 0xFE);
+                IO.writeShort(0x40, 0x01);
+                for (String line : lines(selected)) {
+                    for (char c : line.toCharArray()) {
+                        IO.writeShort(0x40, c);
+                    }
+                    IO.writeShort(0x40, '\n');
+                }
+                if (mode == 1) IO.endBatch();
+            }
+            print(mode == 0 ? "whole screen" : "whole screen, batched", trips, operationsAfter() - ops, time, steps);
+        }
+
+        boolean shown = true;
+        for (int mode = 0; mode < 3; mode++) {
+            IO.pipelined = mode == 1;
+            if (mode == 2) {
+                IO.pipelined = false;
+                IO.asynchronous = true;
+                IO.init("localhost", server.getLocalPort());
+            }
+            statistics.draw();
+            int trips = roundTrips;
+            int ops = operationsAfter();
+            long time = System.nanoTime();
+            for (int step = 0; step < steps; step++) {
+                if (step < STATISTICS.length - 1) statistics.down();
+                else statistics.up();
+                statistics.draw();
+            }
+            print(mode == 0 ? "line diff" : mode == 1 ? "line diff, pipelined" : "line diff, asynchronous",
+                    trips, operationsAfter() - ops, time, steps);
+            shown &= shows(lines(statistics.getSelected()));
+
+            // Every screen on the way has to be right, not only the last one
+            for (int step = 0; step < 4; step++) {
+                statistics.down();
+                statistics.draw();
+                operationsAfter();
+                shown &= shows(lines(statistics.getSelected()));
+            }
+            for (int step = 0; step < 4; step++) {
+                statistics.up();
+                statistics.draw();
+                operationsAfter();
+                shown &= shows(lines(statistics.getSelected()));
+            }
+        }
+        System.out.println("Display shows the menu: " + shown);
+
+        boolean ordered = true;
+        for (int address = 0x200; address < 0x200 + 3000; address++) {
+            IO.writeShort(address, address);
+            ordered &= IO.readShort(address) == (short) address;
+        }
+        IO.beginBatch();
+        for (int address = 0x200; address < 0x200 + 3000; address++) {
+            IO.writeShort(address, address + 1);
+            ordered &= IO.readShort(address) == (short) (address + 1);
+        }
+        IO.endBatch();
+        System.out.println("Reads see the writes before them: " + ordered);
+
+        display.clear();
+        display.flush();
+        int ops = operationsAfter();
+        display.plotGraph(Math::sin, 0.1, 10, 0.25);
+        int graph = operationsAfter() - ops;
+        ops = operationsAfter();
+        display.plotGraph(Math::sin, 0.1, 10, 0.25);
+        int same = operationsAfter() - ops;
+        ops = operationsAfter();
+        display.clearFrame();
+        display.plotGraph(Math::cos, 0.1, 10, 0.25);
+        int shifted = operationsAfter() - ops;
+        ops = operationsAfter();
+        display.clearFrame();
+        for (int x = 0; x < 128; x += 4) {
+            display.drawPixel(x, 0, true);
+        }
+        display.flush();
+        int sparse = operationsAfter() - ops;
+        shown = true;
+        for (int x = 0; x < 128; x++) {
+            for (int y = 0; y < 32; y++) {
+                shown &= pixels[x][y] == (y == 0 && x % 4 == 0);
+            }
+        }
+        System.out.println("Frame instructions: graph " + graph + ", same graph " + same + ", other graph " + shifted
+                + ", sparse frame after a graph " + sparse + ", display shows the frame: " + shown);
+        System.exit(0);
+    }
+
+    private static MenuItem menu(DotMatrixDisplay display) {
+        ArrayList<MenuItem> children = new ArrayList<>();
+        MenuItem statistics = new MenuItem("Statistieken", display, children, null);
+        for (String name : STATISTICS) {
+            children.add(new MenuItem(name, display, null, statistics));
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the lines the menu shows with an entry selected
+     */
+    private static String[] lines(int selected) {
+        int start = Math.max(0, Math.min(selected - 1, STATISTICS.length - 3));
+        String[] lines = new String[3];
+        for (int i = 0; i < 3; i++) {
+            lines[i] = (start + i == selected ? "-" : " ") + STATISTICS[start + i];
+        }
+        return lines;
+    }
+
+    private static boolean shows(String[] lines) {
+        for (int line = 0; line < 3; line++) {
+            if (!new String(text[line]).stripTrailing().equals(lines[line])) return false;
+        }
+        return true;
+    }
+
+    private static void print(String name, int trips, int ops, long time, int steps) {
+        System.out.printf("%-24s %5.1f round trips, %5.1f writes, %6.2f ms per step\n", name,
+                (roundTrips - trips) / (double) steps, ops / (double) steps, (System.nanoTime() - time) / 1e6 / steps);
+    }
+
+    /**
+     * @return the number of operations the emulator has handled, after all operations so far, without the
+     * reads this method makes to wait for them
+     */
+    private static int operationsAfter() {
+        IO.readShort(0x90);
+        waits++;
+        return operations - waits;
+    }
+
+    /**
+     * Keeps the text and pixels of a display at 0x42 with its text at 0x40. 0xFE 0x01 clears the display,
+     * other commands after 0xFE move the cursor home, '\n' moves it to the start of the next line.
+     */
+    private static void display(short address, short value) {
+        if (address == 0x40) {
+            if (command) {
+                if (value == 0x01) {
+                    for (char[] line : text) {
+                        Arrays.fill(line, ' ');
+                    }
+                    clearPixels();
+                }
+                textLine = 0;
+                textColumn = 0;
+                command = false;
+            } else if (value == 0xFE) {
+                command = true;
+            } else if (value == '\n') {
+                textLine++;
+                textColumn = 0;
+            } else {
+                if (textLine < 3 && textColumn < 21) text[textLine][textColumn] = (char) value;
+                textColumn++;
+            }
+        } else if (address == 0x42) {
+            int opcode = value >> 12;
+            int x = (value >> 5) & 0b1111111;
+            int y = value & 0b11111;
+            if (opcode == 3) clearPixels();
+            else if (opcode < 2) pixels[x][y] = opcode == 1;
+        }
+    }
+
+    private static void clearPixels() {
+        for (boolean[] column : pixels) {
+            Arrays.fill(column, false);
+        }
+    }
+
+    /**
+     * Answers the requests of one client at a time: 0 reads an address, 1 writes it. Answers are sent when
+     * all requests received so far have been handled
+     */
+    private static void serve(ServerSocket server) {
+        for (; ; ) {
+            try (Socket client = server.accept()) {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+                for (; ; ) {
+                    if (input.available() == 0) {
+                        output.flush();
+                        roundTrips++;
+                        Thread.sleep(LATENCY);
+                    }
+                    short code = input.readShort();
+                    short address = input.readShort();
+                    short value = input.readShort();
+                    operations++;
+                    if (code == 1) {
+                        display(address, value);
+                        memory[address & 0xFFFF] = value;
+                        output.writeShort(0);
+                    } else {
+                        output.writeShort(memory[address & 0xFFFF]);
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // The client is gone, wait for the next one
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of the most recent measurement. After the first poll only measurements newer than the last
+ * one seen are requested, and records are only decoded when they are actually new. Listeners are only
+ * called when new valid measurements have arrived, the most recent measurement is kept even if it is invalid.
+ */
+public class LiveFeed {
+
+    public interface Listener {
+        /**
+         * @param measurements the new valid measurements, oldest first
+         */
+        void measurementsReceived(List<Measurement> measurements);
+    }
+
+    private final ArrayList<Listener> listeners = new ArrayList<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long lastSeen = Long.MIN_VALUE;
+    private Measurement current;
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the most recent measurement, valid or not, or null if none has been received yet
+     */
+    public Measurement getCurrent() {
+        return current;
+    }
+
+    /**
+     * Asks the database for measurements newer than the last one seen, and notifies the listeners if there are
+     * valid ones
+     *
+     * @return true if new measurements have been received, even if none of them is valid
+     */
+    public boolean poll() {
+        long seen = lastSeen;
+        ArrayList<Measurement> received = lastSeen == Long.MIN_VALUE ? pollLast() : pollNewer();
+        if (lastSeen == seen)
+            return false;
+
+        if (!received.isEmpty()) {
+            for (Listener listener : listeners)
+                listener.measurementsReceived(received);
+        }
+        return true;
+    }
+
+    private ArrayList<Measurement> pollLast() {
+        ArrayList<Measurement> received = new ArrayList<>();
+        RawMeasurement raw = DatabaseConnection.getMostRecentMeasurement();
+        if (raw != null) {
+            lastSeen = raw.getDateStamp().atZone(zone).toEpochSecond();
+            current = new Measurement(raw);
+            if (current.isValid())
+                received.add(current);
+        }
+        return received;
+    }
+
+    private ArrayList<Measurement> pollNewer() {
+        ArrayList<Measurement> received = new ArrayList<>();
+        LocalDateTime since = LocalDateTime.ofInstant(Instant.ofEpochSecond(lastSeen + 1), zone);
+        try (MeasurementStream stream = DatabaseConnection.streamMeasurementsBetween(since, LocalDateTime.now())) {
+            while (stream.hasNext()) {
+                ByteBuffer record = stream.nextRecord();
+                long timestamp = record.getLong(record.position() + MeasurementStream.TIMESTAMP_OFFSET);
+                if (timestamp <= lastSeen)
+                    continue;
+
+                lastSeen = timestamp;
+                current = new Measurement(MeasurementStream.decode(record, zone));
+                if (current.isValid())
+                    received.add(current);
+            }
+        } catch (DatabaseException e) {
+            e.printStackTrace();
+        }
+        return received;
+    }
+}
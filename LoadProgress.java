@@ -0,0 +1,38 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared state of a running load: the number of records decoded so far, and whether the load has been
+ * cancelled. Loading code checks {@link #checkCancelled()} regularly, so a cancelled load stops quickly.
+ */
+public class LoadProgress {
+    private final AtomicLong records = new AtomicLong();
+    private volatile boolean cancelled;
+
+    /**
+     * @return the number of records decoded so far
+     */
+    public long getRecords() {
+        return records.get();
+    }
+
+    public void addRecords(long count) {
+        records.addAndGet(count);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if the load has been cancelled
+     */
+    public void checkCancelled() {
+        if (cancelled)
+            throw new CancellationException();
+    }
+}
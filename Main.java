@@ -3,6 +3,7 @@ import guiboard.*;
 import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
 import java.util.ArrayList;
 
 public class Main {
@@ -11,6 +12,10 @@ public class Main {
     private static Period period;
     private static Measurement currentMeasurement;
     private static LocalDateTime currentTime;
+    private static LiveFeed liveFeed;
+    private static RollingWindow lastWeek;
+    private static CompletableFuture<Boolean> lastWeekFilled;
+    private static PrefetchScheduler prefetcher;
 
     private static LocalDate lucasBegin;
     private static LocalDate lucasEnd;
@@ -29,6 +34,16 @@ public class Main {
 
 
     public static void main(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--approximate"))
+                MenuItem.StatsAction.approximate = true;
+            if (arg.equals("--parallel"))
+                Period.parallel = true;
+            if (arg.equals("--pipelined"))
+                IO.pipelined = true;
+            if (arg.equals("--async"))
+                IO.asynchronous = true;
+        }
 
         IO.init();
 
@@ -72,6 +87,7 @@ public class Main {
                 left.clear();
                 right.clear();
                 display.clear();
+                display.flush();
                 System.exit(0);
                 return null;
             }
@@ -84,13 +100,24 @@ public class Main {
         end = LocalDate.now();
         period = new Period(begin, end);
 
-        RawMeasurement rawMeasurement = DatabaseConnection.getMostRecentMeasurement();
-        if (rawMeasurement == null) {
+        // Load the periods that are most likely to be picked in the background
+        prefetcher = new PrefetchScheduler();
+        prefetcher.prefetch(LocalDate.of(begin.getYear(), 1, 1), LocalDate.of(begin.getYear(), 12, 31));
+        prefetcher.prefetch(begin.minusDays(30), end);
+        period.setPrefetched(prefetcher.prefetch(begin, end));
+
+        // The segment displays are only redrawn when a new measurement has arrived
+        liveFeed = new LiveFeed();
+        // The last week is loaded once in the background, every new measurement is added to it and old ones expire
+        lastWeek = new RollingWindow(7);
+        liveFeed.addListener(lastWeek);
+        Period week = new Period(7);
+        week.setPrefetched(prefetcher.prefetch(week.getBegin(), week.getEnd()));
+        fillLastWeek(week);
+        if (!pollCurrent()) {
             System.err.println("Couldn't get most recent measurement!");
-        } else {
-            currentMeasurement = new Measurement(DatabaseConnection.getMostRecentMeasurement());
-            currentTime = LocalDateTime.now().plusMinutes(1);
         }
+        currentTime = LocalDateTime.now().plusMinutes(1);
 
         MenuItem year = new MenuItem("Jaar", display, null, periodMenu);
         MenuItem month = new MenuItem("Maand", display, null, periodMenu);
@@ -103,15 +130,13 @@ public class Main {
                     display.clear();
                     if (!begin.isAfter(end)) {
                         period = new Period(begin, end);
-
-                        display.clear();
-                        display.writeLine("");
-                        display.writeLine("      Loading...");
-                        period.getMeasurements();
-                        display.clear();
+                        period.setPrefetched(prefetcher.take(begin, end));
+                        // Keep loading in the background, the statistics wait for it when they are opened
+                        period.loadAsync();
                     } else {
                         display.writeLine("     Foutmelding");
                         display.writeLine(" Einde is voor begin");
+                        display.flush();
                         for (; ; ) {
                             if (buttonSelect.changed()) {
                                 break;
@@ -133,6 +158,11 @@ public class Main {
                 begin = LocalDate.of(values[0], begin.getMonth(), begin.getDayOfMonth());
                 end = LocalDate.of(values[1], end.getMonth(), end.getDayOfMonth());
             }
+
+            @Override
+            protected void changed() {
+                prefetchEdited(values[0], begin.getMonthValue(), begin.getDayOfMonth(), values[1], end.getMonthValue(), end.getDayOfMonth());
+            }
         });
         month.setAction(new MenuItem.TimeAction(month, begin.getMonthValue(), end.getMonthValue(), 1, 12, display, buttonDown, buttonUp, buttonSelect) {
             @Override
@@ -140,6 +170,11 @@ public class Main {
                 begin = LocalDate.of(begin.getYear(), values[0], begin.getDayOfMonth());
                 end = LocalDate.of(end.getYear(), values[1], end.getDayOfMonth());
             }
+
+            @Override
+            protected void changed() {
+                prefetchEdited(begin.getYear(), values[0], begin.getDayOfMonth(), end.getYear(), values[1], end.getDayOfMonth());
+            }
         });
         day.setAction(new MenuItem.TimeAction(day, begin.getDayOfMonth(), end.getDayOfMonth(), 1, 31, display, buttonDown, buttonUp, buttonSelect) {
             @Override
@@ -151,6 +186,7 @@ public class Main {
                     display.clear();
                     display.writeLine("     Foutmelding");
                     display.writeLine("Dag zit niet in maand");
+                    display.flush();
                     for (; ; ) {
                         if (buttonSelect.changed()) {
                             break;
@@ -159,6 +195,11 @@ public class Main {
                     }
                 }
             }
+
+            @Override
+            protected void changed() {
+                prefetchEdited(begin.getYear(), begin.getMonthValue(), values[0], end.getYear(), end.getMonthValue(), values[1]);
+            }
         });
         periodChildren.add(year);
         periodChildren.add(month);
@@ -166,183 +207,106 @@ public class Main {
         periodChildren.add(periodBack);
 
         MenuItem outsideTemp = new MenuItem("Buitentemperatuur", display, null, statistics);
-        outsideTemp.setAction(new MenuItem.StatsAction(outsideTemp, display, buttonDown, buttonUp, buttonSelect, " C", "%.1f") {
+        outsideTemp.setAction(new MenuItem.ChannelStatsAction(outsideTemp, display, buttonDown, buttonUp, buttonSelect, " C", "%.1f", MeasurementTable.OUTSIDE_TEMP) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getOutsideTemp();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getOutsideTemp());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getOutsideTemp();
             }
         });
 
         MenuItem insideTemp = new MenuItem("Binnentemperatuur", display, null, statistics);
-        insideTemp.setAction(new MenuItem.StatsAction(insideTemp, display, buttonDown, buttonUp, buttonSelect, " C", "%.1f") {
-
+        insideTemp.setAction(new MenuItem.ChannelStatsAction(insideTemp, display, buttonDown, buttonUp, buttonSelect, " C", "%.1f", MeasurementTable.INSIDE_TEMP) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getInsideTemp();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getInsideTemp());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getInsideTemp();
             }
         });
 
         MenuItem insideHum = new MenuItem("Bi. luchtvochtigheid", display, null, statistics);
-        insideHum.setAction(new MenuItem.StatsAction(insideHum, display, buttonDown, buttonUp, buttonSelect, "%%", "%.0f") {
-
+        insideHum.setAction(new MenuItem.ChannelStatsAction(insideHum, display, buttonDown, buttonUp, buttonSelect, "%%", "%.0f", MeasurementTable.INSIDE_HUM) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getInsideHum();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getInsideHum());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getInsideHum();
             }
         });
 
         MenuItem outsideHum = new MenuItem("Bu. luchtvochtigheid", display, null, statistics);
-        outsideHum.setAction(new MenuItem.StatsAction(outsideHum, display, buttonDown, buttonUp, buttonSelect, "%%", "%.0f") {
-
+        outsideHum.setAction(new MenuItem.ChannelStatsAction(outsideHum, display, buttonDown, buttonUp, buttonSelect, "%%", "%.0f", MeasurementTable.OUTSIDE_HUM) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getOutsideHum();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getOutsideHum());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getOutsideHum();
             }
         });
 
         MenuItem airPressure = new MenuItem("Luchtdruk", display, null, statistics);
-        airPressure.setAction(new MenuItem.StatsAction(airPressure, display, buttonDown, buttonUp, buttonSelect, " hPa", "%.1f") {
-
+        airPressure.setAction(new MenuItem.ChannelStatsAction(airPressure, display, buttonDown, buttonUp, buttonSelect, " hPa", "%.1f", MeasurementTable.BAROMETER) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getBarometer();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getBarometer());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getBarometer();
             }
         });
 
         MenuItem windSpeed = new MenuItem("Windsnelheid", display, null, statistics);
-        windSpeed.setAction(new MenuItem.StatsAction(windSpeed, display, buttonDown, buttonUp, buttonSelect, " m/s", "%.1f") {
-
+        windSpeed.setAction(new MenuItem.ChannelStatsAction(windSpeed, display, buttonDown, buttonUp, buttonSelect, " m/s", "%.1f", MeasurementTable.WIND_SPEED) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getWindSpeed();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getWindSpeed());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getWindSpeed();
             }
         });
 
         MenuItem avgWindSpeed = new MenuItem("Gem windsnelheid", display, null, statistics);
-        avgWindSpeed.setAction(new MenuItem.StatsAction(avgWindSpeed, display, buttonDown, buttonUp, buttonSelect, " m/s", "%.1f") {
-
+        avgWindSpeed.setAction(new MenuItem.ChannelStatsAction(avgWindSpeed, display, buttonDown, buttonUp, buttonSelect, " m/s", "%.1f", MeasurementTable.AVG_WIND_SPEED) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getAvgWindSpeed();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getAvgWindSpeed());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getAvgWindSpeed();
             }
         });
 
         MenuItem windDirection = new MenuItem("Windrichting", display, null, statistics);
-        windDirection.setAction(new MenuItem.StatsAction(windDirection, display, buttonDown, buttonUp, buttonSelect, " grad.", "%.0f") {
-
+        windDirection.setAction(new MenuItem.ChannelStatsAction(windDirection, display, buttonDown, buttonUp, buttonSelect, " grad.", "%.0f", MeasurementTable.WIND_DIR) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getWindDir();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getWindDir());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getWindDir();
             }
         });
 
         MenuItem rainFall = new MenuItem("Neerslag", display, null, statistics);
-        rainFall.setAction(new MenuItem.StatsAction(rainFall, display, buttonDown, buttonUp, buttonSelect, " mm", "%.1f") {
-
+        rainFall.setAction(new MenuItem.ChannelStatsAction(rainFall, display, buttonDown, buttonUp, buttonSelect, " mm", "%.1f", MeasurementTable.RAIN_RATE) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getRainRate();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getRainRate());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getRainRate();
             }
         });
 
         MenuItem uvLevel = new MenuItem("UV-niveau", display, null, statistics);
-        uvLevel.setAction(new MenuItem.StatsAction(uvLevel, display, buttonDown, buttonUp, buttonSelect, "", "%.1f") {
-
+        uvLevel.setAction(new MenuItem.ChannelStatsAction(uvLevel, display, buttonDown, buttonUp, buttonSelect, "", "%.1f", MeasurementTable.UV_LEVEL) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getUVLevel();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getUVLevel());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getUVLevel();
             }
         });
 
         MenuItem solarRadiation = new MenuItem("Zonnestraling", display, null, statistics);
-        solarRadiation.setAction(new MenuItem.StatsAction(solarRadiation, display, buttonDown, buttonUp, buttonSelect, "W/m2", "%.1f") {
-
+        solarRadiation.setAction(new MenuItem.ChannelStatsAction(solarRadiation, display, buttonDown, buttonUp, buttonSelect, "W/m2", "%.1f", MeasurementTable.SOLAR_RAD) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getSolarRad();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getSolarRad());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getSolarRad();
             }
         });
 
         MenuItem xMittBat = new MenuItem("Xmit Batterij", display, null, statistics);
-        xMittBat.setAction(new MenuItem.StatsAction(xMittBat, display, buttonDown, buttonUp, buttonSelect) {
-
+        xMittBat.setAction(new MenuItem.ChannelStatsAction(xMittBat, display, buttonDown, buttonUp, buttonSelect, "", "%.2f", MeasurementTable.XMIT_BATT) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getXmitBatt();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getXmitBatt());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getXmitBatt();
             }
         });
 
         MenuItem battLevel = new MenuItem("Batterij niveau", display, null, statistics);
-        battLevel.setAction(new MenuItem.StatsAction(battLevel, display, buttonDown, buttonUp, buttonSelect, "%%", "%.1f") {
-
+        battLevel.setAction(new MenuItem.ChannelStatsAction(battLevel, display, buttonDown, buttonUp, buttonSelect, "%%", "%.1f", MeasurementTable.BATT_LEVEL) {
             @Override
-            public void getValues() {
-                Period p = getCurrentPeriod();
-                currentValue = getCurrentMeasurement().getBattLevel();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getBattLevel());
-                }
+            protected double getCurrentValue() {
+                return getCurrentMeasurement().getBattLevel();
             }
         });
 
@@ -414,10 +378,8 @@ public class Main {
             public void getValues() {
                 Period p = getCurrentPeriod();
                 currentValue = getCurrentMeasurement().getDewPoint();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getDewPoint());
-                }
+                values = p.getValues(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.OUTSIDE_HUM,
+                        (temp, hum) -> ValueConverter.dewPoint(ValueConverter.temperature(temp), ValueConverter.humidity(hum)));
             }
         });
 
@@ -428,10 +390,7 @@ public class Main {
             public void getValues() {
                 Period p = getCurrentPeriod();
                 currentValue = getCurrentMeasurement().getHeatIndex();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getHeatIndex());
-                }
+                values = p.getValues(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.OUTSIDE_HUM, ValueConverter::convertHeatIndices);
             }
         });
 
@@ -442,10 +401,7 @@ public class Main {
             public void getValues() {
                 Period p = getCurrentPeriod();
                 currentValue = getCurrentMeasurement().getWindChill();
-                values = new ArrayList<>();
-                for (Measurement measurement : p.getMeasurements()) {
-                    values.add(measurement.getWindChill());
-                }
+                values = p.getValues(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.WIND_SPEED, ValueConverter::convertWindChills);
             }
         });
 
@@ -500,6 +456,11 @@ public class Main {
                 lucasBegin = LocalDate.of(value, 1, 1);
                 lucasEnd = LocalDate.of(value, 12, 31);
             }
+
+            @Override
+            protected void changed() {
+                prefetcher.prefetchEdited(LocalDate.of(value, 1, 1), LocalDate.of(value, 12, 31));
+            }
         });
 
         MenuItem lucasResult = new MenuItem("Resultaat", display, null, lucasMenu);
@@ -508,6 +469,17 @@ public class Main {
             public void getValues() {
             }
 
+            @Override
+            protected Period getPeriod() {
+                if (lucasBegin.equals(lucasEnd))
+                    return null;
+                if (!lucasPeriod.getBegin().equals(lucasBegin) || !lucasPeriod.getEnd().equals(lucasEnd)) {
+                    lucasPeriod = new Period(lucasBegin, lucasEnd);
+                    lucasPeriod.setPrefetched(prefetcher.take(lucasBegin, lucasEnd));
+                }
+                return lucasPeriod;
+            }
+
             @Override
             protected void calculateStatistics() {
                 String m;
@@ -516,16 +488,8 @@ public class Main {
                     m = " Geen jaar gekozen!";
                     error = true;
                 } else {
-                    display.clear();
-                    if (!lucasPeriod.getBegin().equals(lucasBegin) || !lucasPeriod.getEnd().equals(lucasEnd)) {
-                        lucasPeriod = new Period(lucasBegin, lucasEnd);
-                        display.writeLine("");
-                        display.writeLine("      Loading...");
-                        lucasPeriod.getMeasurements();
-                    }
                     Period p = getLucasPeriod();
                     m = p.monthWithMostRain();
-                    display.clear();
                 }
 
                 calculated = new ArrayList<>();
@@ -586,12 +550,38 @@ public class Main {
         statsChildren.add(windChill);
         statsChildren.add(statsBack);
 
+        MenuItem weekStats = new MenuItem("Afgelopen week", display, null, root);
+        weekStats.setAction(new MenuItem.StatsAction(weekStats, display, buttonDown, buttonUp, buttonSelect) {
+            @Override
+            protected Period getPeriod() {
+                // The window is always up to date, there is nothing to load
+                return null;
+            }
+
+            @Override
+            public void getValues() {
+            }
+
+            @Override
+            protected void calculateStatistics() {
+                StatisticsAccumulator temp = lastWeek.getStatistics(MeasurementTable.OUTSIDE_TEMP);
+                StatisticsAccumulator rain = lastWeek.getStatistics(MeasurementTable.RAIN_RATE);
+                calculated = new ArrayList<>();
+                calculated.add(new Entry<>("Sinds: ", lastWeek.getBegin(), "%s"));
+                calculated.add(new Entry<>("Gem. temp: ", temp.getMean(), "%.1f", " C"));
+                calculated.add(new Entry<>("Hoogste temp: ", temp.getMax(), "%.1f", " C"));
+                calculated.add(new Entry<>("Laagste temp: ", temp.getMin(), "%.1f", " C"));
+                calculated.add(new Entry<>("Std. afw.: ", temp.getStandardDeviation(), "%.2f", " C"));
+                calculated.add(new Entry<>("Max. regen: ", rain.getMax(), "%.1f", " mm"));
+                calculated.add(new Entry<>("Hittegolf: ", lastWeek.hasHeatWave() ? "Ja" : "Nee", "%s"));
+            }
+        });
+
         rootChildren.add(miscStats);
+        rootChildren.add(weekStats);
         rootChildren.add(lucasMenu);
         rootChildren.add(quit);
 
-        drawCurrent(currentMeasurement);
-
         current = root;
         current.draw();
 
@@ -614,25 +604,61 @@ public class Main {
             }
 
             if (currentTime.isBefore(LocalDateTime.now())) {
-                rawMeasurement = DatabaseConnection.getMostRecentMeasurement();
-                if (rawMeasurement == null) {
-                    System.err.println("Couldn't get most recent measurement!");
-                } else {
-                    currentMeasurement = new Measurement(rawMeasurement);
-                    currentTime = LocalDateTime.now().plusMinutes(1);
-                    drawCurrent(currentMeasurement);
+                pollCurrent();
+                if (!lastWeekFilled.getNow(true)) {
+                    fillLastWeek(new Period(7));
                 }
-
+                currentTime = LocalDateTime.now().plusMinutes(1);
             }
             IO.delay(LOOPDELAY);
         }
     }
 
+    /**
+     * Fills the last week with the measurements of a period in the background, the main loop tries again when
+     * it could not be loaded
+     */
+    private static void fillLastWeek(Period week) {
+        lastWeekFilled = week.loadAsync().thenApply(table -> {
+            lastWeek.addAll(table);
+            return table.size() > 0;
+        }).exceptionally(e -> false);
+    }
+
+    /**
+     * Polls the live feed and shows the most recent measurement, also when it is not valid
+     *
+     * @return true if a new measurement has arrived
+     */
+    private static boolean pollCurrent() {
+        if (!liveFeed.poll())
+            return false;
+        currentMeasurement = liveFeed.getCurrent();
+        drawCurrent(currentMeasurement);
+        return true;
+    }
+
     public static void drawCurrent(Measurement measurement) {
         LocalDateTime time = measurement.getDateStamp();
-        top.writeNumber(time.getHour() * 100 + time.getMinute());
-        left.writeNumber(measurement.getOutsideTemp());
-        right.writeNumber(measurement.getInsideTemp());
+        IO.beginBatch();
+        try {
+            top.writeNumber(time.getHour() * 100 + time.getMinute());
+            left.writeNumber(measurement.getOutsideTemp());
+            right.writeNumber(measurement.getInsideTemp());
+        } finally {
+            IO.endBatch();
+        }
+    }
+
+    /**
+     * Prefetches the range the user is editing in the period menu, if it is a valid range
+     */
+    private static void prefetchEdited(int beginYear, int beginMonth, int beginDay, int endYear, int endMonth, int endDay) {
+        try {
+            prefetcher.prefetchEdited(LocalDate.of(beginYear, beginMonth, beginDay), LocalDate.of(endYear, endMonth, endDay));
+        } catch (DateTimeException e) {
+            // Not a valid date (yet), nothing to prefetch
+        }
     }
 
     public static Period getCurrentPeriod() {
@@ -4,29 +4,48 @@ import java.time.LocalTime;
 public class Measurement {
     private String stationId;
     private LocalDateTime dateStamp;
-    private Double barometer;
-    private Double insideTemp;
-    private Double outsideTemp;
-    private Double insideHum;
-    private Double outsideHum;
-    private Double windSpeed;
-    private Double avgWindSpeed;
-    private Double windDir;
-    private Double rainRate;
-    private Double UVLevel;
-    private Double solarRad;
-    private Double xmitBatt;
-    private Double battLevel;
-    private Short foreIcon;
+    private double barometer;
+    private double insideTemp;
+    private double outsideTemp;
+    private double insideHum;
+    private double outsideHum;
+    private double windSpeed;
+    private double avgWindSpeed;
+    private double windDir;
+    private double rainRate;
+    private double UVLevel;
+    private double solarRad;
+    private double xmitBatt;
+    private double battLevel;
+    private short foreIcon;
     private LocalTime sunrise;
     private LocalTime sunset;
 
-    private Double dewPoint;
-    private Double heatIndex;
-    private Double windChill;
+    private double dewPoint;
+    private double heatIndex;
+    private double windChill;
 
     private RawMeasurement rawMeasurement;
 
+    // Bits of the values that have been converted already
+    private int converted;
+    private static final int BAROMETER = 1 << 0;
+    private static final int INSIDE_TEMP = 1 << 1;
+    private static final int OUTSIDE_TEMP = 1 << 2;
+    private static final int INSIDE_HUM = 1 << 3;
+    private static final int OUTSIDE_HUM = 1 << 4;
+    private static final int WIND_SPEED = 1 << 5;
+    private static final int AVG_WIND_SPEED = 1 << 6;
+    private static final int WIND_DIR = 1 << 7;
+    private static final int RAIN_RATE = 1 << 8;
+    private static final int UV_LEVEL = 1 << 9;
+    private static final int SOLAR_RAD = 1 << 10;
+    private static final int XMIT_BATT = 1 << 11;
+    private static final int BATT_LEVEL = 1 << 12;
+    private static final int DEW_POINT = 1 << 13;
+    private static final int HEAT_INDEX = 1 << 14;
+    private static final int WIND_CHILL = 1 << 15;
+
     public Measurement(RawMeasurement rawMeasurement) {
         this.rawMeasurement = rawMeasurement;
 
@@ -43,93 +62,113 @@ public class Measurement {
         return dateStamp;
     }
 
+    /**
+     * @return the raw values this measurement converts
+     */
+    public RawMeasurement getRawMeasurement() {
+        return rawMeasurement;
+    }
+
     public double getBarometer() {
-        if (barometer == null) {
+        if ((converted & BAROMETER) == 0) {
             barometer = ValueConverter.airPressure(rawMeasurement.getBarometer());
+            converted |= BAROMETER;
         }
         return barometer;
     }
 
     public double getInsideTemp() {
-        if (insideTemp == null) {
+        if ((converted & INSIDE_TEMP) == 0) {
             insideTemp = ValueConverter.temperature(rawMeasurement.getInsideTemp());
+            converted |= INSIDE_TEMP;
         }
         return insideTemp;
     }
 
     public double getOutsideTemp() {
-        if (outsideTemp == null) {
+        if ((converted & OUTSIDE_TEMP) == 0) {
             outsideTemp = ValueConverter.temperature(rawMeasurement.getOutsideTemp());
+            converted |= OUTSIDE_TEMP;
         }
         return outsideTemp;
     }
 
     public double getInsideHum() {
-        if (insideHum == null) {
+        if ((converted & INSIDE_HUM) == 0) {
             insideHum = ValueConverter.humidity(rawMeasurement.getInsideHum());
+            converted |= INSIDE_HUM;
         }
         return insideHum;
     }
 
     public double getOutsideHum() {
-        if (outsideHum == null) {
+        if ((converted & OUTSIDE_HUM) == 0) {
             outsideHum = ValueConverter.humidity(rawMeasurement.getOutsideHum());
+            converted |= OUTSIDE_HUM;
         }
         return outsideHum;
     }
 
     public double getWindSpeed() {
-        if (windSpeed == null) {
+        if ((converted & WIND_SPEED) == 0) {
             windSpeed = ValueConverter.windSpeed(rawMeasurement.getWindSpeed());
+            converted |= WIND_SPEED;
         }
         return windSpeed;
     }
 
     public double getAvgWindSpeed() {
-        if (avgWindSpeed == null) {
+        if ((converted & AVG_WIND_SPEED) == 0) {
             avgWindSpeed = ValueConverter.windSpeed(rawMeasurement.getAvgWindSpeed());
+            converted |= AVG_WIND_SPEED;
         }
         return avgWindSpeed;
     }
 
     public double getWindDir() {
-        if (windDir == null) {
+        if ((converted & WIND_DIR) == 0) {
             windDir = ValueConverter.windDirection(rawMeasurement.getWindDir());
+            converted |= WIND_DIR;
         }
         return windDir;
     }
 
     public double getRainRate() {
-        if (rainRate == null) {
+        if ((converted & RAIN_RATE) == 0) {
             rainRate = ValueConverter.rainMeter(rawMeasurement.getRainRate());
+            converted |= RAIN_RATE;
         }
         return rainRate;
     }
 
     public double getUVLevel() {
-        if (UVLevel == null) {
+        if ((converted & UV_LEVEL) == 0) {
             UVLevel = ValueConverter.uvLevel(rawMeasurement.getUVLevel());
+            converted |= UV_LEVEL;
         }
         return UVLevel;
     }
 
     public double getSolarRad() {
-        if (solarRad == null) {
+        if ((converted & SOLAR_RAD) == 0) {
             solarRad = ValueConverter.solarRadiation(rawMeasurement.getSolarRad());
+            converted |= SOLAR_RAD;
         }
         return solarRad;
     }
 
     public double getXmitBatt() {
-        if (xmitBatt == null) {
+        if ((converted & XMIT_BATT) == 0) {
             xmitBatt = ValueConverter.batteryLevel(rawMeasurement.getXmitBatt());
+            converted |= XMIT_BATT;
         }
         return xmitBatt;
     }
 
     public double getBattLevel() {
-        if (battLevel == null) {
+        if ((converted & BATT_LEVEL) == 0) {
             battLevel = ValueConverter.batteryLevel(rawMeasurement.getBattLevel());
+            converted |= BATT_LEVEL;
         }
         return battLevel;
     }
@@ -153,23 +192,26 @@ public class Measurement {
         return sunset;
     }
 
-    public Double getDewPoint() {
-        if (dewPoint == null) {
+    public double getDewPoint() {
+        if ((converted & DEW_POINT) == 0) {
             dewPoint = ValueConverter.dewPoint(getOutsideTemp(), getOutsideHum());
+            converted |= DEW_POINT;
         }
         return dewPoint;
     }
 
-    public Double getHeatIndex() {
-        if (heatIndex == null) {
+    public double getHeatIndex() {
+        if ((converted & HEAT_INDEX) == 0) {
             heatIndex = ValueConverter.heatIndex(rawMeasurement.getOutsideTemp(), rawMeasurement.getOutsideHum());
+            converted |= HEAT_INDEX;
         }
         return heatIndex;
     }
 
-    public Double getWindChill() {
-        if (windChill == null) {
+    public double getWindChill() {
+        if ((converted & WIND_CHILL) == 0) {
             windChill = ValueConverter.windChill(rawMeasurement.getOutsideTemp(), rawMeasurement.getWindSpeed());
+            converted |= WIND_CHILL;
         }
         return windChill;
     }
@@ -0,0 +1,177 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures the bytes allocated per Measurement when every value is read, like a scan over the measurements
+ * of a period. Compares Measurement, which caches in primitive fields, against a copy of the old cache in
+ * boxed Double fields. Needs a JVM that reports allocated bytes per thread, like HotSpot.
+ */
+public class MeasurementAllocationBenchmark {
+    private static final int RECORDS = 100_000;
+    private static final int ROUNDS = 5;
+
+    private static double sink;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        RawMeasurement[] raws = new RawMeasurement[RECORDS];
+        Random random = new Random(42);
+        for (int i = 0; i < RECORDS; i++) {
+            RawMeasurement raw = new RawMeasurement();
+            raw.setBarometer((short) (29500 + random.nextInt(1000)));
+            raw.setInsideTemp((short) 700);
+            raw.setOutsideTemp((short) (400 + random.nextInt(500)));
+            raw.setInsideHum((short) 45);
+            raw.setOutsideHum((short) (60 + random.nextInt(40)));
+            raw.setWindSpeed((short) random.nextInt(20));
+            raw.setAvgWindSpeed((short) random.nextInt(15));
+            raw.setWindDir((short) random.nextInt(360));
+            raw.setRainRate((short) random.nextInt(50));
+            raw.setUVLevel((short) 10);
+            raw.setSolarRad((short) 100);
+            raw.setXmitBatt((short) 0);
+            raw.setBattLevel((short) 300);
+            raw.setSunrise((short) 630);
+            raw.setSunset((short) 1745);
+            raws[i] = raw;
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (RawMeasurement raw : raws) {
+                sink += readAll(new BoxedMeasurement(raw));
+            }
+            long boxedTime = System.nanoTime() - start;
+            long boxed = threads.getThreadAllocatedBytes(thread) - before;
+
+            before = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (RawMeasurement raw : raws) {
+                sink += readAll(new Measurement(raw));
+            }
+            long primitiveTime = System.nanoTime() - start;
+            long primitive = threads.getThreadAllocatedBytes(thread) - before;
+
+            System.out.printf("Boxed:     %6.1f bytes/measurement, %6.1f ns/measurement\n", boxed / (double) RECORDS, boxedTime / (double) RECORDS);
+            System.out.printf("Primitive: %6.1f bytes/measurement, %6.1f ns/measurement\n", primitive / (double) RECORDS, primitiveTime / (double) RECORDS);
+        }
+        System.out.printf("checksum %.3f\n", sink);
+    }
+
+    private static double readAll(Measurement m) {
+        // Twice, the second time comes from the cache
+        double sum = 0;
+        for (int i = 0; i < 2; i++) {
+            sum += m.getBarometer() + m.getInsideTemp() + m.getOutsideTemp() + m.getInsideHum() + m.getOutsideHum()
+                    + m.getWindSpeed() + m.getAvgWindSpeed() + m.getWindDir() + m.getRainRate() + m.getUVLevel()
+                    + m.getSolarRad() + m.getXmitBatt() + m.getBattLevel() + m.getDewPoint() + m.getHeatIndex() + m.getWindChill();
+        }
+        return sum;
+    }
+
+    private static double readAll(BoxedMeasurement m) {
+        double sum = 0;
+        for (int i = 0; i < 2; i++) {
+            sum += m.getBarometer() + m.getInsideTemp() + m.getOutsideTemp() + m.getInsideHum() + m.getOutsideHum()
+                    + m.getWindSpeed() + m.getAvgWindSpeed() + m.getWindDir() + m.getRainRate() + m.getUVLevel()
+                    + m.getSolarRad() + m.getXmitBatt() + m.getBattLevel() + m.getDewPoint() + m.getHeatIndex() + m.getWindChill();
+        }
+        return sum;
+    }
+
+    /**
+     * The old Measurement cache, every converted value in a Double
+     */
+    private static class BoxedMeasurement {
+        private final RawMeasurement raw;
+        private Double barometer, insideTemp, outsideTemp, insideHum, outsideHum, windSpeed, avgWindSpeed, windDir,
+                rainRate, UVLevel, solarRad, xmitBatt, battLevel, dewPoint, heatIndex, windChill;
+
+        BoxedMeasurement(RawMeasurement raw) {
+            this.raw = raw;
+        }
+
+        double getBarometer() {
+            if (barometer == null) barometer = ValueConverter.airPressure(raw.getBarometer());
+            return barometer;
+        }
+
+        double getInsideTemp() {
+            if (insideTemp == null) insideTemp = ValueConverter.temperature(raw.getInsideTemp());
+            return insideTemp;
+        }
+
+        double getOutsideTemp() {
+            if (outsideTemp == null) outsideTemp = ValueConverter.temperature(raw.getOutsideTemp());
+            return outsideTemp;
+        }
+
+        double getInsideHum() {
+            if (insideHum == null) insideHum = ValueConverter.humidity(raw.getInsideHum());
+            return insideHum;
+        }
+
+        double getOutsideHum() {
+            if (outsideHum == null) outsideHum = ValueConverter.humidity(raw.getOutsideHum());
+            return outsideHum;
+        }
+
+        double getWindSpeed() {
+            if (windSpeed == null) windSpeed = ValueConverter.windSpeed(raw.getWindSpeed());
+            return windSpeed;
+        }
+
+        double getAvgWindSpeed() {
+            if (avgWindSpeed == null) avgWindSpeed = ValueConverter.windSpeed(raw.getAvgWindSpeed());
+            return avgWindSpeed;
+        }
+
+        double getWindDir() {
+            if (windDir == null) windDir = ValueConverter.windDirection(raw.getWindDir());
+            return windDir;
+        }
+
+        double getRainRate() {
+            if (rainRate == null) rainRate = ValueConverter.rainMeter(raw.getRainRate());
+            return rainRate;
+        }
+
+        double getUVLevel() {
+            if (UVLevel == null) UVLevel = ValueConverter.uvLevel(raw.getUVLevel());
+            return UVLevel;
+        }
+
+        double getSolarRad() {
+            if (solarRad == null) solarRad = ValueConverter.solarRadiation(raw.getSolarRad());
+            return solarRad;
+        }
+
+        double getXmitBatt() {
+            if (xmitBatt == null) xmitBatt = ValueConverter.batteryLevel(raw.getXmitBatt());
+            return xmitBatt;
+        }
+
+        double getBattLevel() {
+            if (battLevel == null) battLevel = ValueConverter.batteryLevel(raw.getBattLevel());
+            return battLevel;
+        }
+
+        double getDewPoint() {
+            if (dewPoint == null) dewPoint = ValueConverter.dewPoint(getOutsideTemp(), getOutsideHum());
+            return dewPoint;
+        }
+
+        double getHeatIndex() {
+            if (heatIndex == null) heatIndex = ValueConverter.heatIndex(raw.getOutsideTemp(), raw.getOutsideHum());
+            return heatIndex;
+        }
+
+        double getWindChill() {
+            if (windChill == null) windChill = ValueConverter.windChill(raw.getOutsideTemp(), raw.getWindSpeed());
+            return windChill;
+        }
+    }
+}
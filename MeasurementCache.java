@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary cache file for measurements. The file holds a small header followed by the records exactly
+ * as they are sent by the REST API, so a cached period is read back through a memory mapped buffer
+ * without deserializing anything.
+ * <p>
+ * Header layout (big-endian, {@link #HEADER_SIZE} bytes):
+ * magic, version, record size, record count (ints), first and last timestamp in epoch seconds (longs).
+ */
+public class MeasurementCache {
+
+    public static final int MAGIC = 0x5753_4D43; // "WSMC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * Maps the records of a cache file into memory.
+     *
+     * @param file the cache file
+     * @return a read-only buffer holding only the records, or null if the file is not a valid cache file
+     */
+    public static ByteBuffer map(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE)
+                return null;
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            Header header = readHeader(buffer);
+            if (header == null || HEADER_SIZE + (long) header.getCount() * MeasurementStream.RECORD_SIZE > length)
+                return null;
+
+            buffer.position(HEADER_SIZE);
+            buffer.limit(HEADER_SIZE + header.getCount() * MeasurementStream.RECORD_SIZE);
+            return buffer.slice();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Reads only the header of a cache file
+     *
+     * @param file the cache file
+     * @return the header, or null if the file is not a valid cache file
+     */
+    public static Header readHeader(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    return null;
+            }
+            buffer.flip();
+            return readHeader(buffer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static Header readHeader(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != MeasurementStream.RECORD_SIZE)
+            return null;
+        return new Header(buffer.getInt(12), buffer.getLong(16), buffer.getLong(24));
+    }
+
+    /**
+     * Starts writing a new cache file. Nothing is visible at the given path until the writer is committed.
+     *
+     * @param file the cache file to write
+     * @return a writer, or null if the file could not be created
+     */
+    public static Writer create(Path file) {
+        try {
+            return new Writer(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    public static class Header {
+        private final int count;
+        private final long first;
+        private final long last;
+
+        public Header(int count, long first, long last) {
+            this.count = count;
+            this.first = first;
+            this.last = last;
+        }
+
+        /**
+         * @return the number of records in the file
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return the timestamp of the first record in epoch seconds
+         */
+        public long getFirst() {
+            return first;
+        }
+
+        /**
+         * @return the timestamp of the last record in epoch seconds
+         */
+        public long getLast() {
+            return last;
+        }
+    }
+
+    /**
+     * Appends records to a temporary file and moves it into place on {@link #commit()}
+     */
+    public static class Writer {
+        private final Path file;
+        private final Path tempFile;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * MeasurementStream.RECORD_SIZE);
+        private int count;
+        private long first;
+        private long last;
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            this.tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            this.channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.channel.position(HEADER_SIZE);
+        }
+
+        /**
+         * @param record a buffer holding one record, from its position on
+         */
+        public void write(ByteBuffer record) throws IOException {
+            long timestamp = record.getLong(record.position() + MeasurementStream.TIMESTAMP_OFFSET);
+            if (count == 0)
+                first = timestamp;
+            last = timestamp;
+            count++;
+
+            if (buffer.remaining() < MeasurementStream.RECORD_SIZE)
+                drain();
+            buffer.put(record.duplicate().limit(record.position() + MeasurementStream.RECORD_SIZE));
+        }
+
+        /**
+         * Writes the header and moves the file into place
+         */
+        public void commit() throws IOException {
+            try {
+                drain();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(MeasurementStream.RECORD_SIZE).putInt(count);
+                header.putLong(first).putLong(last);
+                header.flip();
+                channel.write(header, 0);
+            } finally {
+                channel.close();
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /**
+         * Throws away everything written so far
+         */
+        public void abort() {
+            try {
+                channel.close();
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,367 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local store of measurements, split up in one cache file per day. The set of day files on disk is the
+ * index of what the store already holds: a request only fetches the days that are missing, and serves
+ * everything else from disk.
+ * <p>
+ * Days before today never change, so their files never expire. Today is the live tail, its file is keyed
+ * on the current hour just like the old cache files, so it is refreshed every hour.
+ * <p>
+ * Long runs of missing days are split into chunks that are downloaded in parallel. Every chunk is decoded
+ * into its own day files, reading the days back in order stitches them together in timestamp order.
+ * Days that are already being downloaded for another request are not downloaded again, the request waits
+ * for that download instead.
+ */
+public class MeasurementStore {
+
+    public static final int DEFAULT_CHUNK_DAYS = 7;
+    public static final int DEFAULT_THREADS = 4;
+
+    private final Path directory;
+    private final int chunkDays;
+    private final ExecutorService executor;
+    private final String host;
+    // The download of every day that is being fetched right now
+    private final HashMap<LocalDate, CompletableFuture<Boolean>> inFlight = new HashMap<>();
+    // The hour of the newest tail files, older ones are pruned when it changes
+    private long tailHour;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * @param directory the directory to keep the day files in
+     */
+    public MeasurementStore(Path directory) {
+        this(directory, DEFAULT_CHUNK_DAYS, DEFAULT_THREADS);
+    }
+
+    /**
+     * @param directory the directory to keep the day files in
+     * @param chunkDays the maximum number of days fetched with a single request
+     * @param threads   the maximum number of requests running at the same time
+     */
+    public MeasurementStore(Path directory, int chunkDays, int threads) {
+        this(directory, chunkDays, threads, DatabaseConnection.host);
+    }
+
+    /**
+     * @param directory the directory to keep the day files in
+     * @param chunkDays the maximum number of days fetched with a single request
+     * @param threads   the maximum number of requests running at the same time
+     * @param host      the base address of the REST API to fetch missing days from
+     */
+    MeasurementStore(Path directory, int chunkDays, int threads, String host) {
+        this.directory = directory;
+        this.host = host;
+        this.chunkDays = chunkDays;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "measurement-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns all measurements between the 2 dates and times, fetching only the days that are not stored yet
+     *
+     * @param begin the date and time of the first measurement
+     * @param end   the date and time of the last measurement
+     * @return a table of raw measurements, or null if a missing day could not be fetched
+     */
+    public MeasurementTable getBetween(LocalDateTime begin, LocalDateTime end) {
+        return getBetween(begin, end, new LoadProgress());
+    }
+
+    /**
+     * Returns all measurements between the 2 dates and times, fetching only the days that are not stored yet
+     *
+     * @param begin    the date and time of the first measurement
+     * @param end      the date and time of the last measurement
+     * @param progress receives the number of records decoded, and can cancel the load
+     * @return a table of raw measurements, or null if a missing day could not be fetched
+     * @throws java.util.concurrent.CancellationException if the load has been cancelled
+     */
+    public MeasurementTable getBetween(LocalDateTime begin, LocalDateTime end, LoadProgress progress) {
+        LocalDate first = begin.toLocalDate();
+        LocalDate last = end.toLocalDate();
+        long hour = currentHour();
+
+        // There is nothing to store for days that have not started yet
+        if (last.isAfter(LocalDate.now()))
+            last = LocalDate.now();
+        if (first.isAfter(last))
+            return new MeasurementTable();
+
+        boolean fetched = storeDays(first, last, hour, progress);
+        progress.checkCancelled();
+        if (!fetched)
+            return null;
+
+        // Records of fetched days have been counted while they were downloaded
+        long downloaded = progress.getRecords();
+        MeasurementTable table = read(first, last, hour, begin.atZone(zone).toEpochSecond(), end.atZone(zone).toEpochSecond(), progress);
+        if (table != null && table.size() > downloaded)
+            progress.addRecords(table.size() - downloaded);
+        return table;
+    }
+
+    /**
+     * Fetches the days that are not stored yet, without reading any of them
+     *
+     * @param first    the first day
+     * @param last     the last day
+     * @param progress receives the number of records downloaded, and can cancel the download
+     * @return true if all days are stored
+     */
+    public boolean storeDays(LocalDate first, LocalDate last, LoadProgress progress) {
+        if (last.isAfter(LocalDate.now()))
+            last = LocalDate.now();
+        return storeDays(first, last, currentHour(), progress);
+    }
+
+    private boolean storeDays(LocalDate first, LocalDate last, long hour, LoadProgress progress) {
+        for (; ; ) {
+            ArrayList<CompletableFuture<Boolean>> chunks = new ArrayList<>();
+            HashSet<CompletableFuture<Boolean>> joined = new HashSet<>();
+            synchronized (inFlight) {
+                // Split runs of consecutive missing days into chunks, each chunk is fetched with a single request
+                LocalDate chunkStart = null;
+                for (LocalDate day = first; !day.isAfter(last.plusDays(1)); day = day.plusDays(1)) {
+                    CompletableFuture<Boolean> running = day.isAfter(last) ? null : inFlight.get(day);
+                    boolean missing = !day.isAfter(last) && running == null && !isStored(day, hour);
+                    if (running != null)
+                        joined.add(running);
+
+                    if (chunkStart != null && (!missing || ChronoUnit.DAYS.between(chunkStart, day) >= chunkDays)) {
+                        chunks.add(fetchAsync(chunkStart, day.minusDays(1), hour, progress));
+                        chunkStart = null;
+                    }
+                    if (missing && chunkStart == null)
+                        chunkStart = day;
+                }
+            }
+
+            boolean fetched = true;
+            for (CompletableFuture<Boolean> chunk : chunks)
+                fetched &= chunk.join();
+            if (!fetched)
+                return false;
+
+            // A download of another request may have failed or been cancelled, its days are tried again
+            boolean retry = false;
+            for (CompletableFuture<Boolean> download : joined)
+                retry |= !download.join();
+            if (!retry || progress.isCancelled())
+                return !retry;
+        }
+    }
+
+    /**
+     * Maps the records of a stored day into memory
+     *
+     * @param day the day to read
+     * @return a read-only buffer holding the records of the day, or null if the day is not stored
+     */
+    public ByteBuffer map(LocalDate day) {
+        return MeasurementCache.map(getFile(day, currentHour()));
+    }
+
+    /**
+     * @param day the day to check
+     * @return true if a valid file for this day exists
+     */
+    public boolean isStored(LocalDate day) {
+        return isStored(day, currentHour());
+    }
+
+    private boolean isStored(LocalDate day, long hour) {
+        Path file = getFile(day, hour);
+        return Files.exists(file) && MeasurementCache.readHeader(file) != null;
+    }
+
+    /**
+     * Starts fetching a range of days, and marks the days as being fetched until the download is done.
+     * Only called while holding the lock on inFlight.
+     */
+    private CompletableFuture<Boolean> fetchAsync(LocalDate first, LocalDate last, long hour, LoadProgress progress) {
+        CompletableFuture<Boolean> download = CompletableFuture.supplyAsync(() -> fetch(first, last, hour, progress), executor);
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1))
+            inFlight.put(day, download);
+        download.whenComplete((fetched, e) -> {
+            synchronized (inFlight) {
+                for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1))
+                    inFlight.remove(day, download);
+            }
+        });
+        return download;
+    }
+
+    /**
+     * Fetches a range of whole days with a single request and stores every day in its own file.
+     * Days without any measurements are stored as empty files, so they are not fetched again.
+     *
+     * @param first    the first day to fetch
+     * @param last     the last day to fetch
+     * @param hour     the current hour, used to name the file of the live tail
+     * @param progress receives the number of records downloaded, and can cancel the download
+     * @return true if all days have been stored
+     */
+    private boolean fetch(LocalDate first, LocalDate last, long hour, LoadProgress progress) {
+        if (progress.isCancelled())
+            return false;
+
+        MeasurementStream stream;
+        try {
+            stream = DatabaseConnection.streamMeasurementsBetween(host, first.atStartOfDay(), LocalDateTime.of(last, LocalTime.of(23, 59, 59)));
+        } catch (DatabaseException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        HashMap<LocalDate, MeasurementCache.Writer> writers = new HashMap<>();
+        boolean ok = true;
+        try (stream) {
+            for (LocalDate day = first; !day.isAfter(last) && ok; day = day.plusDays(1)) {
+                MeasurementCache.Writer writer = MeasurementCache.create(getFile(day, hour));
+                if (writer == null)
+                    ok = false;
+                else
+                    writers.put(day, writer);
+            }
+
+            while (ok && stream.hasNext()) {
+                progress.checkCancelled();
+                ByteBuffer record = stream.nextRecord();
+                LocalDate day = getDay(record);
+                MeasurementCache.Writer writer = writers.get(day);
+                // A record outside the requested days means the day boundaries do not match, so no day is trusted
+                if (writer == null) {
+                    System.err.println("Measurement of " + day + " received for " + first + " - " + last);
+                    ok = false;
+                    break;
+                }
+                writer.write(record);
+                progress.addRecords(1);
+            }
+            ok = ok && stream.isComplete();
+
+            if (ok) {
+                for (MeasurementCache.Writer writer : writers.values())
+                    writer.commit();
+                return true;
+            }
+        } catch (CancellationException e) {
+            // Days that are not complete yet are thrown away below
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        for (MeasurementCache.Writer writer : writers.values())
+            writer.abort();
+        return false;
+    }
+
+    /**
+     * Reads the stored days into one table, keeping only the measurements within the given time range
+     */
+    private MeasurementTable read(LocalDate first, LocalDate last, long hour, long begin, long end, LoadProgress progress) {
+        ArrayList<ByteBuffer> days = new ArrayList<>();
+        int count = 0;
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            ByteBuffer records = MeasurementCache.map(getFile(day, hour));
+            if (records == null)
+                return null;
+            days.add(records);
+            count += records.limit() / MeasurementStream.RECORD_SIZE;
+        }
+
+        MeasurementTable table = new MeasurementTable(count);
+        for (ByteBuffer records : days) {
+            progress.checkCancelled();
+            for (int position = 0; position + MeasurementStream.RECORD_SIZE <= records.limit(); position += MeasurementStream.RECORD_SIZE) {
+                long timestamp = records.getLong(position + MeasurementStream.TIMESTAMP_OFFSET);
+                if (timestamp < begin || timestamp > end)
+                    continue;
+                records.position(position);
+                table.add(records);
+            }
+        }
+        return table;
+    }
+
+    private LocalDate getDay(ByteBuffer record) {
+        long timestamp = record.getLong(record.position() + MeasurementStream.TIMESTAMP_OFFSET);
+        return Instant.ofEpochSecond(timestamp).atZone(zone).toLocalDate();
+    }
+
+    /**
+     * @param day  the day to get the file for
+     * @param hour the current hour
+     * @return the file of a finished day, or the hourly refreshed file of the live tail
+     */
+    private Path getFile(LocalDate day, long hour) {
+        if (day.isBefore(LocalDate.now()))
+            return directory.resolve("day_" + day + ".rec");
+        return directory.resolve(hour + "_tail_" + day + ".rec");
+    }
+
+    private long currentHour() {
+        long hour = System.currentTimeMillis() / (1000 * 60 * 60);
+        synchronized (this) {
+            if (hour <= tailHour)
+                return hour;
+            tailHour = hour;
+        }
+        // Loads that started in the previous hour may still read its tails
+        pruneTails(directory, hour - 1);
+        return hour;
+    }
+
+    /**
+     * @param file a file in the store directory
+     * @return true if it is a file of the live tail
+     */
+    static boolean isTail(Path file) {
+        return file.getFileName().toString().contains("_tail_");
+    }
+
+    /**
+     * Deletes the files of the live tail that were refreshed before an hour, a running dashboard gets a new
+     * one every hour
+     *
+     * @param directory the directory of the store
+     * @param hour      the first hour to keep
+     */
+    static void pruneTails(Path directory, long hour) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*_tail_*.rec")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    if (Long.parseLong(name.substring(0, name.indexOf("_tail_"))) < hour)
+                        Files.deleteIfExists(file);
+                } catch (NumberFormatException e) {
+                    // Not a file of the store
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs MeasurementStore against a local stub of the REST API, which answers every between request
+ * with one record per 10 minutes after a fixed delay. Compares sequential and parallel chunk fetching,
+ * and checks that the stitched table is complete and in timestamp order, that overlapping requests
+ * download every day only once, and that tails of earlier hours are pruned.
+ */
+public class MeasurementStoreTest {
+    private static final int DELAY = 200;
+    private static final AtomicInteger requests = new AtomicInteger();
+    private static final ZoneId zone = ZoneId.systemDefault();
+
+    public static void main(String[] args) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/between/", exchange -> {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            byte[] body = records(LocalDateTime.parse(parts[2]), LocalDateTime.parse(parts[3]));
+            requests.incrementAndGet();
+            delay();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        String host = "http://localhost:" + server.getAddress().getPort() + "/";
+
+        LocalDate first = LocalDate.of(2024, 7, 1);
+        LocalDate last = LocalDate.of(2024, 8, 25);  // 8 weeks
+        long expected = 8 * 7 * 24 * 6;
+
+        try {
+            System.out.println("Sequential:");
+            run(new MeasurementStore(Files.createTempDirectory("ws-test"), 7, 1, host), first, last, expected);
+            System.out.println("Parallel:");
+            run(new MeasurementStore(Files.createTempDirectory("ws-test"), 7, 8, host), first, last, expected);
+
+            System.out.println("Partially stored:");
+            Path directory = Files.createTempDirectory("ws-test");
+            new MeasurementStore(directory, MeasurementStore.DEFAULT_CHUNK_DAYS, MeasurementStore.DEFAULT_THREADS, host).getBetween(first.atStartOfDay(), LocalDateTime.of(first.plusDays(13), LocalTime.of(23, 59)));
+            run(new MeasurementStore(directory, 7, 8, host), first, last, expected);
+
+            // Like the prefetches at startup: the whole range, the last 30 days, the last week and the last day
+            System.out.println("Overlapping requests at the same time:");
+            MeasurementStore store = new MeasurementStore(Files.createTempDirectory("ws-test"), 7, 8, host);
+            LocalDate until = last;
+            LocalDate[] firsts = {first, until.minusDays(29), until.minusDays(6), until};
+            ArrayList<CompletableFuture<MeasurementTable>> tables = new ArrayList<>();
+            requests.set(0);
+            for (LocalDate from : firsts)
+                tables.add(CompletableFuture.supplyAsync(() -> store.getBetween(from.atStartOfDay(), LocalDateTime.of(until, LocalTime.of(23, 59, 59)))));
+            boolean complete = true;
+            for (int i = 0; i < firsts.length; i++)
+                complete &= tables.get(i).join().size() == (until.toEpochDay() - firsts[i].toEpochDay() + 1) * 24 * 6;
+            System.out.printf("  %d requests for 8 weeks, all tables complete: %s\n", requests.get(), complete);
+
+            // Only different from the rest in a time zone with DST, like -Duser.timezone=Europe/Amsterdam
+            System.out.println("Across DST changes:");
+            first = LocalDate.of(2024, 3, 25);
+            last = LocalDate.of(2024, 11, 3);
+            expected = (LocalDateTime.of(last, LocalTime.of(23, 59, 59)).atZone(zone).toEpochSecond()
+                    - first.atStartOfDay(zone).toEpochSecond()) / (10 * 60) + 1;
+            run(new MeasurementStore(Files.createTempDirectory("ws-test"), 7, 8, host), first, last, expected);
+
+            // Tails of the previous hour may still be read, older ones are pruned on the first request of an hour
+            System.out.println("Pruning tails:");
+            directory = Files.createTempDirectory("ws-test");
+            long hour = System.currentTimeMillis() / (1000 * 60 * 60);
+            LocalDate today = LocalDate.now();
+            Path[] tails = {directory.resolve((hour - 5) + "_tail_" + today.minusDays(1) + ".rec"),
+                    directory.resolve((hour - 2) + "_tail_" + today + ".rec"),
+                    directory.resolve((hour - 1) + "_tail_" + today + ".rec")};
+            Path day = directory.resolve("day_" + today.minusDays(1) + ".rec");
+            for (Path tail : tails)
+                Files.createFile(tail);
+            Files.createFile(day);
+            new MeasurementStore(directory, 7, 8, host).isStored(today);
+            System.out.printf("  old tails pruned: %s, previous hour and days kept: %s\n",
+                    !Files.exists(tails[0]) && !Files.exists(tails[1]), Files.exists(tails[2]) && Files.exists(day));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void run(MeasurementStore store, LocalDate first, LocalDate last, long expected) {
+        requests.set(0);
+        long start = System.nanoTime();
+        MeasurementTable table = store.getBetween(first.atStartOfDay(), LocalDateTime.of(last, LocalTime.of(23, 59, 59)));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        boolean ordered = true;
+        for (int row = 1; row < table.size(); row++) {
+            if (table.getEpochSecond(row) <= table.getEpochSecond(row - 1))
+                ordered = false;
+        }
+        System.out.printf("  %d requests, %d ms, %d/%d records, ordered: %s\n", requests.get(), millis, table.size(), expected, ordered);
+
+        // A second call should be served from disk without any request
+        requests.set(0);
+        MeasurementTable again = store.getBetween(first.atStartOfDay(), LocalDateTime.of(last, LocalTime.of(23, 59, 59)));
+        System.out.printf("  again: %d requests, %d records\n", requests.get(), again.size());
+    }
+
+    private static byte[] records(LocalDateTime begin, LocalDateTime end) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        // Every 10 minutes of real time, so days around a DST change have more or fewer records
+        for (long second = begin.atZone(zone).toEpochSecond(); second <= end.atZone(zone).toEpochSecond(); second += 10 * 60) {
+            out.writeShort(29863);
+            out.writeLong(second);
+            for (int channel = MeasurementTable.INSIDE_TEMP; channel < MeasurementTable.CHANNELS; channel++)
+                out.writeShort(channel);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void delay() {
+        try {
+            Thread.sleep(DELAY);
+        } catch (InterruptedException ignored) {
+        }
+    }
+}
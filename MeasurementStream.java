@@ -0,0 +1,149 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes the fixed-size binary records of the REST API one at a time, so callers can start
+ * working on the first measurements while the rest of the (gzip) stream is still arriving.
+ * Caching the records is up to {@link MeasurementStore}, which splits them into day files.
+ */
+public class MeasurementStream implements Iterator<RawMeasurement>, Closeable {
+
+	/**
+	 * Size in bytes of one record: barometer, timestamp (long), 14 sensor values and the station id
+	 */
+	public static final int RECORD_SIZE = 40;
+
+	/**
+	 * Offset of the timestamp within a record, it follows the barometer value
+	 */
+	public static final int TIMESTAMP_OFFSET = 2;
+
+	private final InputStream input;
+	private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+	private final ZoneId zone = ZoneId.systemDefault();
+	private boolean hasRecord;
+	private boolean finished;
+	private boolean complete;
+
+	/**
+	 * @param input the stream to decode records from
+	 */
+	public MeasurementStream(InputStream input) {
+		this.input = input;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!hasRecord && !finished)
+			fill();
+		return hasRecord;
+	}
+
+	@Override
+	public RawMeasurement next() {
+		return decode(nextRecord(), zone);
+	}
+
+	/**
+	 * Returns the next record without decoding it. The returned buffer may be reused for every record,
+	 * so it is only valid until the next call on this stream.
+	 *
+	 * @return a big-endian buffer positioned at the start of a record of {@link #RECORD_SIZE} bytes
+	 */
+	public ByteBuffer nextRecord() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		hasRecord = false;
+		record.rewind();
+		return record;
+	}
+
+	/**
+	 * @return true if all records have been read without errors
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Closes the underlying stream
+	 */
+	@Override
+	public void close() {
+		if (!finished)
+			finish(false);
+	}
+
+	/**
+	 * Makes one complete record available, or marks the stream as finished
+	 */
+	private void fill() {
+		byte[] bytes = record.array();
+		int read = 0;
+		try {
+			while (read < RECORD_SIZE) {
+				int n = input.read(bytes, read, RECORD_SIZE - read);
+				if (n < 0)
+					break;
+				read += n;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			finish(false);
+			return;
+		}
+
+		if (read < RECORD_SIZE) {
+			finish(true);
+			return;
+		}
+
+		hasRecord = true;
+	}
+
+	private void finish(boolean complete) {
+		finished = true;
+		hasRecord = false;
+		this.complete = complete;
+		try {
+			input.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Decodes one record, starting at the current position of the buffer
+	 *
+	 * @param buffer the big-endian record buffer
+	 * @param zone   the time zone used to convert the epoch timestamp to local time
+	 * @return the decoded measurement
+	 */
+	public static RawMeasurement decode(ByteBuffer buffer, ZoneId zone) {
+		RawMeasurement measurement = new RawMeasurement();
+		measurement.setBarometer(buffer.getShort());
+		measurement.setDateStamp(LocalDateTime.ofInstant(Instant.ofEpochSecond(buffer.getLong()), zone));
+		measurement.setInsideTemp(buffer.getShort());
+		measurement.setInsideHum(buffer.getShort());
+		measurement.setOutsideTemp(buffer.getShort());
+		measurement.setOutsideHum(buffer.getShort());
+		measurement.setWindSpeed(buffer.getShort());
+		measurement.setAvgWindSpeed(buffer.getShort());
+		measurement.setWindDir(buffer.getShort());
+		measurement.setRainRate(buffer.getShort());
+		measurement.setUVLevel(buffer.getShort());
+		measurement.setSolarRad(buffer.getShort());
+		measurement.setXmitBatt(buffer.getShort());
+		measurement.setBattLevel(buffer.getShort());
+		measurement.setSunrise(buffer.getShort());
+		measurement.setSunset(buffer.getShort());
+
+		measurement.setStationId(buffer.getShort() + "");
+		return measurement;
+	}
+}
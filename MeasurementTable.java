@@ -0,0 +1,482 @@
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import simd.ColumnKernels;
+
+/**
+ * Column oriented storage of raw measurements. Every sensor channel is kept in its own short array
+ * and the timestamps in a long array of epoch seconds, so scanning one channel touches nothing else.
+ */
+public class MeasurementTable {
+
+    // Channels, in the order they appear in a record of the REST API
+    public static final int BAROMETER = 0;
+    public static final int INSIDE_TEMP = 1;
+    public static final int INSIDE_HUM = 2;
+    public static final int OUTSIDE_TEMP = 3;
+    public static final int OUTSIDE_HUM = 4;
+    public static final int WIND_SPEED = 5;
+    public static final int AVG_WIND_SPEED = 6;
+    public static final int WIND_DIR = 7;
+    public static final int RAIN_RATE = 8;
+    public static final int UV_LEVEL = 9;
+    public static final int SOLAR_RAD = 10;
+    public static final int XMIT_BATT = 11;
+    public static final int BATT_LEVEL = 12;
+    public static final int SUNRISE = 13;
+    public static final int SUNSET = 14;
+    public static final int STATION_ID = 15;
+    public static final int CHANNELS = 16;
+
+    private static final Converter[] converters = new Converter[CHANNELS];
+    private static final ColumnConverter[] columnConverters = new ColumnConverter[CHANNELS];
+
+    // Every channel converts as raw * scale + offset, which lets the statistics be calculated on the raw values
+    private static final double[] scales = new double[CHANNELS];
+    private static final double[] offsets = new double[CHANNELS];
+
+    static {
+        converters[BAROMETER] = ValueConverter::airPressure;
+        converters[INSIDE_TEMP] = ValueConverter::temperature;
+        converters[INSIDE_HUM] = ValueConverter::humidity;
+        converters[OUTSIDE_TEMP] = ValueConverter::temperature;
+        converters[OUTSIDE_HUM] = ValueConverter::humidity;
+        converters[WIND_SPEED] = ValueConverter::windSpeed;
+        converters[AVG_WIND_SPEED] = ValueConverter::windSpeed;
+        converters[WIND_DIR] = ValueConverter::windDirection;
+        converters[RAIN_RATE] = ValueConverter::rainMeter;
+        converters[UV_LEVEL] = ValueConverter::uvLevel;
+        converters[SOLAR_RAD] = ValueConverter::solarRadiation;
+        converters[XMIT_BATT] = ValueConverter::batteryLevel;
+        converters[BATT_LEVEL] = ValueConverter::batteryLevel;
+        converters[SUNRISE] = raw -> raw;
+        converters[SUNSET] = raw -> raw;
+        converters[STATION_ID] = raw -> raw;
+
+        columnConverters[BAROMETER] = ValueConverter::convertAirPressures;
+        columnConverters[INSIDE_TEMP] = ValueConverter::convertTemperatures;
+        columnConverters[INSIDE_HUM] = ValueConverter::convertUnchanged;
+        columnConverters[OUTSIDE_TEMP] = ValueConverter::convertTemperatures;
+        columnConverters[OUTSIDE_HUM] = ValueConverter::convertUnchanged;
+        columnConverters[WIND_SPEED] = ValueConverter::convertWindSpeeds;
+        columnConverters[AVG_WIND_SPEED] = ValueConverter::convertWindSpeeds;
+        columnConverters[WIND_DIR] = ValueConverter::convertUnchanged;
+        columnConverters[RAIN_RATE] = ValueConverter::convertRainMeters;
+        columnConverters[UV_LEVEL] = ValueConverter::convertUvLevels;
+        columnConverters[SOLAR_RAD] = ValueConverter::convertUnchanged;
+        columnConverters[XMIT_BATT] = ValueConverter::convertBatteryLevels;
+        columnConverters[BATT_LEVEL] = ValueConverter::convertBatteryLevels;
+        columnConverters[SUNRISE] = ValueConverter::convertUnchanged;
+        columnConverters[SUNSET] = ValueConverter::convertUnchanged;
+        columnConverters[STATION_ID] = ValueConverter::convertUnchanged;
+
+        Arrays.fill(scales, 1);
+        scales[BAROMETER] = 1 / 1000.0 / 0.029530;
+        scales[INSIDE_TEMP] = 1 / 18.0;
+        offsets[INSIDE_TEMP] = -32 / 1.8;
+        scales[OUTSIDE_TEMP] = 1 / 18.0;
+        offsets[OUTSIDE_TEMP] = -32 / 1.8;
+        scales[WIND_SPEED] = 0.44704;
+        scales[AVG_WIND_SPEED] = 0.44704;
+        scales[RAIN_RATE] = 25.4 / 100;
+        scales[UV_LEVEL] = 1 / 10.0;
+        scales[XMIT_BATT] = 300.0 / 512;
+        scales[BATT_LEVEL] = 300.0 / 512;
+    }
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long[] epochSeconds;
+    private final short[][] channels;
+    private int size;
+
+    public MeasurementTable() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity the initial number of rows to reserve
+     */
+    public MeasurementTable(int capacity) {
+        capacity = Math.max(capacity, 16);
+        epochSeconds = new long[capacity];
+        channels = new short[CHANNELS][capacity];
+    }
+
+    /**
+     * Appends one record as decoded from the REST API
+     *
+     * @param record a big-endian buffer positioned at the start of a record
+     */
+    public void add(ByteBuffer record) {
+        ensureCapacity(size + 1);
+        channels[BAROMETER][size] = record.getShort();
+        epochSeconds[size] = record.getLong();
+        for (int channel = INSIDE_TEMP; channel < CHANNELS; channel++) {
+            channels[channel][size] = record.getShort();
+        }
+        size++;
+    }
+
+    /**
+     * Appends one raw measurement
+     *
+     * @param raw the measurement to add
+     */
+    public void add(RawMeasurement raw) {
+        ensureCapacity(size + 1);
+        epochSeconds[size] = raw.getDateStamp().atZone(zone).toEpochSecond();
+        channels[BAROMETER][size] = raw.getBarometer();
+        channels[INSIDE_TEMP][size] = raw.getInsideTemp();
+        channels[INSIDE_HUM][size] = raw.getInsideHum();
+        channels[OUTSIDE_TEMP][size] = raw.getOutsideTemp();
+        channels[OUTSIDE_HUM][size] = raw.getOutsideHum();
+        channels[WIND_SPEED][size] = raw.getWindSpeed();
+        channels[AVG_WIND_SPEED][size] = raw.getAvgWindSpeed();
+        channels[WIND_DIR][size] = raw.getWindDir();
+        channels[RAIN_RATE][size] = raw.getRainRate();
+        channels[UV_LEVEL][size] = raw.getUVLevel();
+        channels[SOLAR_RAD][size] = raw.getSolarRad();
+        channels[XMIT_BATT][size] = raw.getXmitBatt();
+        channels[BATT_LEVEL][size] = raw.getBattLevel();
+        channels[SUNRISE][size] = raw.getSunrise();
+        channels[SUNSET][size] = raw.getSunset();
+        channels[STATION_ID][size] = Short.parseShort(raw.getStationId());
+        size++;
+    }
+
+    /**
+     * @return the number of rows in this table
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getEpochSecond(int row) {
+        return epochSeconds[row];
+    }
+
+    public LocalDateTime getDateStamp(int row) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSeconds[row]), zone);
+    }
+
+    public short get(int channel, int row) {
+        return channels[channel][row];
+    }
+
+    /**
+     * @param raw     a row oriented measurement
+     * @param channel one of the channel constants
+     * @return the raw value of the channel in the measurement
+     */
+    public static short get(RawMeasurement raw, int channel) {
+        switch (channel) {
+            case BAROMETER:
+                return raw.getBarometer();
+            case INSIDE_TEMP:
+                return raw.getInsideTemp();
+            case INSIDE_HUM:
+                return raw.getInsideHum();
+            case OUTSIDE_TEMP:
+                return raw.getOutsideTemp();
+            case OUTSIDE_HUM:
+                return raw.getOutsideHum();
+            case WIND_SPEED:
+                return raw.getWindSpeed();
+            case AVG_WIND_SPEED:
+                return raw.getAvgWindSpeed();
+            case WIND_DIR:
+                return raw.getWindDir();
+            case RAIN_RATE:
+                return raw.getRainRate();
+            case UV_LEVEL:
+                return raw.getUVLevel();
+            case SOLAR_RAD:
+                return raw.getSolarRad();
+            case XMIT_BATT:
+                return raw.getXmitBatt();
+            case BATT_LEVEL:
+                return raw.getBattLevel();
+            case SUNRISE:
+                return raw.getSunrise();
+            case SUNSET:
+                return raw.getSunset();
+            case STATION_ID:
+                return Short.parseShort(raw.getStationId());
+            default:
+                throw new IllegalArgumentException("Unknown channel " + channel);
+        }
+    }
+
+    /**
+     * Returns the backing array of a channel. Only the first {@link #size()} values are valid.
+     *
+     * @param channel one of the channel constants
+     * @return the raw values of the channel
+     */
+    public short[] getColumn(int channel) {
+        return channels[channel];
+    }
+
+    /**
+     * Returns the backing array of timestamps. Only the first {@link #size()} values are valid.
+     *
+     * @return the timestamps in epoch seconds
+     */
+    public long[] getEpochSeconds() {
+        return epochSeconds;
+    }
+
+    /**
+     * Builds a row oriented raw measurement, for code that still works on single measurements
+     *
+     * @param row the row to convert
+     * @return a new raw measurement
+     */
+    public RawMeasurement getRawMeasurement(int row) {
+        RawMeasurement raw = new RawMeasurement();
+        raw.setDateStamp(getDateStamp(row));
+        raw.setBarometer(channels[BAROMETER][row]);
+        raw.setInsideTemp(channels[INSIDE_TEMP][row]);
+        raw.setInsideHum(channels[INSIDE_HUM][row]);
+        raw.setOutsideTemp(channels[OUTSIDE_TEMP][row]);
+        raw.setOutsideHum(channels[OUTSIDE_HUM][row]);
+        raw.setWindSpeed(channels[WIND_SPEED][row]);
+        raw.setAvgWindSpeed(channels[AVG_WIND_SPEED][row]);
+        raw.setWindDir(channels[WIND_DIR][row]);
+        raw.setRainRate(channels[RAIN_RATE][row]);
+        raw.setUVLevel(channels[UV_LEVEL][row]);
+        raw.setSolarRad(channels[SOLAR_RAD][row]);
+        raw.setXmitBatt(channels[XMIT_BATT][row]);
+        raw.setBattLevel(channels[BATT_LEVEL][row]);
+        raw.setSunrise(channels[SUNRISE][row]);
+        raw.setSunset(channels[SUNSET][row]);
+        raw.setStationId(channels[STATION_ID][row] + "");
+        return raw;
+    }
+
+    /**
+     * Checks a row for the 'dashed' values the weather station sends when a sensor is not available.
+     * Uses the same rules as {@link Measurement#isValid()}.
+     *
+     * @param row the row to check
+     * @return true if all sensors have a value
+     */
+    public boolean isValid(int row) {
+        return channels[BAROMETER][row] != 0
+                && channels[INSIDE_TEMP][row] != 32767
+                && channels[OUTSIDE_TEMP][row] != 32767
+                && channels[INSIDE_HUM][row] != 255
+                && channels[OUTSIDE_HUM][row] != 255
+                && channels[WIND_SPEED][row] != 255
+                && channels[AVG_WIND_SPEED][row] != 255
+                && channels[WIND_DIR][row] != 32767
+                && channels[RAIN_RATE][row] != 32767
+                && channels[UV_LEVEL][row] != 255
+                && channels[SOLAR_RAD][row] != 32767
+                && channels[SUNRISE][row] != 32767
+                && channels[SUNSET][row] != 32767;
+    }
+
+    /**
+     * Removes all invalid rows, keeping the order of the remaining rows
+     */
+    public void removeInvalid() {
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (!isValid(row))
+                continue;
+            if (kept != row) {
+                epochSeconds[kept] = epochSeconds[row];
+                for (short[] column : channels)
+                    column[kept] = column[row];
+            }
+            kept++;
+        }
+        size = kept;
+    }
+
+    /**
+     * Converts one channel to real world values
+     *
+     * @param channel   one of the channel constants
+     * @param converter conversion from raw to real world value, see {@link ValueConverter}
+     * @return an array of exactly {@link #size()} values
+     */
+    public double[] toDoubles(int channel, Converter converter) {
+        short[] column = channels[channel];
+        double[] values = new double[size];
+        for (int row = 0; row < size; row++) {
+            values[row] = converter.convert(column[row]);
+        }
+        return values;
+    }
+
+    /**
+     * Converts one channel to real world values with the bulk conversion of {@link ValueConverter}
+     *
+     * @param channel one of the channel constants
+     * @return an array of exactly {@link #size()} values, the same as {@link #getConverter(int)} gives
+     */
+    public double[] toDoubles(int channel) {
+        double[] values = new double[size];
+        columnConverters[channel].convert(channels[channel], values);
+        return values;
+    }
+
+    /**
+     * Calculates mean, extremes and standard deviation of one channel from sums of the raw values, with the
+     * SIMD kernels when they are available. Median and mode are not calculated.
+     *
+     * @param channel one of the channel constants
+     * @return the statistics of the real world values
+     */
+    public StatisticsAccumulator getStatistics(int channel) {
+        return getStatistics(channel, false);
+    }
+
+    /**
+     * Calculates mean, extremes and standard deviation of one channel, see {@link #getStatistics(int)}
+     *
+     * @param channel  one of the channel constants
+     * @param parallel true to reduce chunks of the rows on all cores. The sums of the raw values are exact,
+     *                 so the result is the same as the sequential one
+     * @return the statistics of the real world values
+     */
+    public StatisticsAccumulator getStatistics(int channel, boolean parallel) {
+        if (size < 1) return new StatisticsAccumulator();
+
+        short[] column = channels[channel];
+        double[] raw;
+        if (parallel) {
+            raw = ParallelScan.reduce(size, (from, to) -> {
+                double[] partial = new double[ColumnKernels.RESULT_SIZE];
+                ColumnKernels.get().reduce(column, from, to, partial);
+                return partial;
+            }, (left, right) -> {
+                left[ColumnKernels.SUM] += right[ColumnKernels.SUM];
+                left[ColumnKernels.SUM_OF_SQUARES] += right[ColumnKernels.SUM_OF_SQUARES];
+                left[ColumnKernels.MIN] = Math.min(left[ColumnKernels.MIN], right[ColumnKernels.MIN]);
+                left[ColumnKernels.MAX] = Math.max(left[ColumnKernels.MAX], right[ColumnKernels.MAX]);
+                return left;
+            });
+        } else {
+            raw = new double[ColumnKernels.RESULT_SIZE];
+            ColumnKernels.get().reduce(column, 0, size, raw);
+        }
+
+        return getStatistics(channel, size, raw[ColumnKernels.SUM], raw[ColumnKernels.SUM_OF_SQUARES],
+                (short) raw[ColumnKernels.MIN], (short) raw[ColumnKernels.MAX]);
+    }
+
+    /**
+     * Converts statistics of raw values of a channel to statistics of the real world values
+     *
+     * @param channel      one of the channel constants
+     * @param count        the number of values
+     * @param sum          the sum of the raw values
+     * @param sumOfSquares the sum of the squares of the raw values
+     * @param min          the lowest raw value
+     * @param max          the highest raw value
+     * @return the statistics of the real world values, without median and mode
+     */
+    public static StatisticsAccumulator getStatistics(int channel, long count, double sum, double sumOfSquares, short min, short max) {
+        if (count < 1) return new StatisticsAccumulator();
+
+        // The sums of the raw values are exact integers, so the variance is taken there and scaled afterwards,
+        // the values are raw * scale + offset
+        double scale = scales[channel];
+        double offset = offsets[channel];
+        Converter converter = converters[channel];
+        double rawM2 = exactM2(count, (long) sum, (long) sumOfSquares);
+        return StatisticsAccumulator.ofMoments(count, scale * (sum / count) + offset, scale * scale * rawM2,
+                converter.convert(min), converter.convert(max));
+    }
+
+    /**
+     * The sum of the squared differences from the mean of integer values, (count * sumOfSquares - sum * sum) / count.
+     * The difference is taken in 128 bits, so it is exact and only the result is rounded.
+     */
+    private static double exactM2(long count, long sum, long sumOfSquares) {
+        long low = count * sumOfSquares - sum * sum;
+        long high = Math.multiplyHigh(count, sumOfSquares) - Math.multiplyHigh(sum, sum)
+                - (Long.compareUnsigned(count * sumOfSquares, sum * sum) < 0 ? 1 : 0);
+        double difference = high * 0x1p64 + (double) (low >>> 32) * 0x1p32 + (double) (low & 0xFFFFFFFFL);
+        return difference / count;
+    }
+
+    /**
+     * Converts a value derived from two channels, like the heat index, for every row at once
+     *
+     * @param first     the channel passed as first column
+     * @param second    the channel passed as second column
+     * @param converter bulk conversion from raw columns to real world values, see {@link ValueConverter}
+     * @return an array of exactly {@link #size()} values
+     */
+    public double[] toDoubles(int first, int second, ColumnPairConverter converter) {
+        double[] values = new double[size];
+        converter.convert(channels[first], channels[second], values);
+        return values;
+    }
+
+    /**
+     * Converts a value derived from two channels, like the dew point, for every row
+     *
+     * @param first     the channel passed as first argument
+     * @param second    the channel passed as second argument
+     * @param converter conversion from raw values to real world value, see {@link ValueConverter}
+     * @return an array of exactly {@link #size()} values
+     */
+    public double[] toDoubles(int first, int second, PairConverter converter) {
+        short[] a = channels[first];
+        short[] b = channels[second];
+        double[] values = new double[size];
+        for (int row = 0; row < size; row++) {
+            values[row] = converter.convert(a[row], b[row]);
+        }
+        return values;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= epochSeconds.length)
+            return;
+        int newCapacity = Math.max(capacity, epochSeconds.length + (epochSeconds.length >> 1));
+        epochSeconds = Arrays.copyOf(epochSeconds, newCapacity);
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            channels[channel] = Arrays.copyOf(channels[channel], newCapacity);
+        }
+    }
+
+    /**
+     * @param channel one of the channel constants
+     * @return the conversion of the channel to its real world value. Sunrise, sunset and station id are
+     * passed on as their raw value
+     */
+    public static Converter getConverter(int channel) {
+        return converters[channel];
+    }
+
+    public interface Converter {
+        double convert(short raw);
+    }
+
+    public interface PairConverter {
+        double convert(short first, short second);
+    }
+
+    /**
+     * Converts the first out.length values of a column
+     */
+    public interface ColumnConverter {
+        void convert(short[] in, double[] out);
+    }
+
+    /**
+     * Converts the first out.length values of two columns
+     */
+    public interface ColumnPairConverter {
+        void convert(short[] first, short[] second, double[] out);
+    }
+}
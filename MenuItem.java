@@ -3,6 +3,7 @@ import guiboard.DotMatrixDisplay;
 import guiboard.IO;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 public class MenuItem {
     private String name;
@@ -25,7 +26,10 @@ public class MenuItem {
         display.clear();
         ArrayList<MenuItem> items = getChildren();
 
-        if (items == null || items.size() < 1) return;
+        if (items == null || items.size() < 1) {
+            display.flush();
+            return;
+        }
 
         int index = getSelected();
 
@@ -51,6 +55,8 @@ public class MenuItem {
             s += items.get(i).getName();
             display.writeLine(s);
         }
+        // Only the lines that changed are sent
+        display.flush();
     }
 
     public ArrayList<MenuItem> getChildren() {
@@ -148,6 +154,8 @@ public class MenuItem {
                     else if (selected)
                         values[index] = max;
 
+                    if (selected)
+                        changed();
                     draw(index);
                 }
                 if (buttonUp.changed()) {
@@ -161,6 +169,8 @@ public class MenuItem {
                     else if (selected)
                         values[index] = min;
 
+                    if (selected)
+                        changed();
                     draw(index);
                 }
                 if (buttonSelect.changed()) {
@@ -196,9 +206,16 @@ public class MenuItem {
 
                 display.writeLine(s);
             }
+            display.flush();
         }
 
         protected abstract void save();
+
+        /**
+         * Called every time the user changes a value, before it is saved
+         */
+        protected void changed() {
+        }
     }
 
     public static abstract class SingleTimeAction extends Action {
@@ -243,6 +260,8 @@ public class MenuItem {
                     else if (selected)
                         value = max;
 
+                    if (selected)
+                        changed();
                     draw(index);
                 }
                 if (buttonUp.changed()) {
@@ -256,6 +275,8 @@ public class MenuItem {
                     else if (selected)
                         value = min;
 
+                    if (selected)
+                        changed();
                     draw(index);
                 }
                 if (buttonSelect.changed()) {
@@ -290,9 +311,16 @@ public class MenuItem {
 
                 display.writeLine(s);
             }
+            display.flush();
         }
 
         protected abstract void save();
+
+        /**
+         * Called every time the user changes a value, before it is saved
+         */
+        protected void changed() {
+        }
     }
 
     public static abstract class StatsAction extends Action {
@@ -301,13 +329,24 @@ public class MenuItem {
         private final Button buttonUp;
         private final Button buttonSelect;
         protected Double currentValue;
-        protected ArrayList<Double> values;
+        protected double[] values;
+        protected StatisticsAccumulator statistics;
         protected ArrayList<Entry> calculated;
         protected String unit;
         protected String formatting;
 
         private int index;
 
+        /**
+         * Estimate median and mode with sketches instead of sorting the values, for very long periods
+         */
+        public static boolean approximate = false;
+
+        /**
+         * Minimum time between 2 updates of the number of records loaded, in milliseconds
+         */
+        private static final int PROGRESS_DELAY = 500;
+
 
         public StatsAction(MenuItem item, DotMatrixDisplay display, Button buttonDown, Button buttonUp, Button buttonSelect) {
             this(item, display, buttonDown, buttonUp, buttonSelect, "", "%.2f");
@@ -328,6 +367,9 @@ public class MenuItem {
             display.clear();
             display.writeLine("");
             display.writeLine("      Loading...");
+            display.flush();
+            if (!load(getPeriod()))
+                return item.getParent();
             getValues();
             calculateStatistics();
             display.clear();
@@ -356,7 +398,10 @@ public class MenuItem {
         protected void draw() {
             display.clear();
 
-            if (calculated == null || calculated.size() < 1) return;
+            if (calculated == null || calculated.size() < 1) {
+                display.flush();
+                return;
+            }
 
             int start = 0;
             int end = 0;
@@ -377,21 +422,79 @@ public class MenuItem {
 
                 display.writeLine(s);
             }
+            display.flush();
         }
 
         protected void calculateStatistics() {
             calculated = new ArrayList<>();
             calculated.add(new Entry<>("Huidige:   ", currentValue, formatting, unit));
-            calculated.add(new Entry<>("Gem.:      ", Period.mean(values), formatting, unit));
-            calculated.add(new Entry<>("Mediaan:   ", Period.median(values), formatting, unit));
-            calculated.add(new Entry<>("Modus:     ", Period.mode(values), formatting, unit));
-            calculated.add(new Entry<>("Hoogste:   ", Period.highest(values), formatting, unit));
-            calculated.add(new Entry<>("Laagste:   ", Period.lowest(values), formatting, unit));
-            calculated.add(new Entry<>("Std. afw.: ", Period.standardDeviation(values), formatting, unit));
+            // Raw channels are counted in a histogram by getValues, derived values are sorted or sketched here
+            StatisticsAccumulator statistics = this.statistics;
+            if (statistics == null)
+                statistics = approximate ? StatisticsAccumulator.approximate(values) : StatisticsAccumulator.of(values);
+            calculated.add(new Entry<>("Gem.:      ", statistics.getMean(), formatting, unit));
+            // Statistics from the stored buckets have no median and mode
+            if (!Double.isNaN(statistics.getMedian()))
+                calculated.add(new Entry<>("Mediaan:   ", statistics.getMedian(), formatting, unit));
+            if (!Double.isNaN(statistics.getMode()))
+                calculated.add(new Entry<>("Modus:     ", statistics.getMode(), formatting, unit));
+            calculated.add(new Entry<>("Hoogste:   ", statistics.getMax(), formatting, unit));
+            calculated.add(new Entry<>("Laagste:   ", statistics.getMin(), formatting, unit));
+            calculated.add(new Entry<>("Std. afw.: ", statistics.getStandardDeviation(), formatting, unit));
         }
 
         public abstract void getValues();
 
+        /**
+         * @return the period the statistics are calculated for, or null if nothing has to be loaded
+         */
+        protected Period getPeriod() {
+            return Main.getCurrentPeriod();
+        }
+
+        /**
+         * Waits for the measurements of a period to be loaded, showing the number of records loaded so far.
+         * Pressing select cancels the load.
+         *
+         * @param period the period to load, may be null
+         * @return false if the load has been cancelled
+         */
+        protected boolean load(Period period) {
+            if (period == null) return true;
+
+            CompletableFuture<?> loading = startLoad(period);
+            long shown = 0;
+            long lastDraw = System.currentTimeMillis();
+            while (!loading.isDone()) {
+                if (buttonSelect.changed()) {
+                    loading.cancel(true);
+                    return false;
+                }
+                long records = period.getLoadedRecords();
+                if (records != shown && System.currentTimeMillis() - lastDraw >= PROGRESS_DELAY) {
+                    shown = records;
+                    lastDraw = System.currentTimeMillis();
+                    display.clear();
+                    display.writeLine("");
+                    display.writeLine("      Loading...");
+                    display.writeLine(String.format("  %d metingen", records));
+                    display.flush();
+                }
+                IO.delay(Main.LOOPDELAY);
+            }
+            return !loading.isCancelled();
+        }
+
+        /**
+         * Starts the load {@link #load(Period)} waits for
+         *
+         * @param period the period to load
+         * @return the running load
+         */
+        protected CompletableFuture<?> startLoad(Period period) {
+            return period.loadAsync();
+        }
+
         protected static class Entry<T> {
             private final String text;
             private final T value;
@@ -432,4 +535,40 @@ public class MenuItem {
 
 
     }
+
+    /**
+     * Statistics of one sensor channel. Mean, extremes and standard deviation come from
+     * {@link Period#getStatistics(int)}, which reduces the raw column with the SIMD kernels. Median and mode are
+     * counted in a histogram of the raw values.
+     * <p>
+     * Long periods, see {@link Period#usesBuckets()}, are always answered from the stored day, month and year
+     * buckets, without loading their measurements. Median and mode are not available for them.
+     */
+    public static abstract class ChannelStatsAction extends StatsAction {
+        private final int channel;
+
+        public ChannelStatsAction(MenuItem item, DotMatrixDisplay display, Button buttonDown, Button buttonUp, Button buttonSelect, String unit, String formatting, int channel) {
+            super(item, display, buttonDown, buttonUp, buttonSelect, unit, formatting);
+            this.channel = channel;
+        }
+
+        @Override
+        protected CompletableFuture<?> startLoad(Period period) {
+            return period.usesBuckets() ? period.loadAggregateAsync() : period.loadAsync();
+        }
+
+        @Override
+        public void getValues() {
+            Period period = getPeriod();
+            currentValue = getCurrentValue();
+            statistics = period.getStatistics(channel);
+            if (!period.usesBuckets())
+                statistics.withMedianAndMode(StatisticsAccumulator.of(period.getHistogram(channel), MeasurementTable.getConverter(channel)));
+        }
+
+        /**
+         * @return the value of the channel in the most recent measurement
+         */
+        protected abstract double getCurrentValue();
+    }
 }
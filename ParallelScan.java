@@ -0,0 +1,62 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Fork/join reduction over a range of rows. The range is split in halves until a chunk is small enough,
+ * every chunk is scanned into its own partial result and the partials are merged in row order, left with
+ * right. Runs in the common pool, so it uses all cores without starting threads of its own.
+ *
+ * @param <T> the partial result, like a {@link ShortHistogram}
+ */
+public class ParallelScan<T> extends RecursiveTask<T> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Rows per chunk, a smaller range is scanned on the calling thread
+     */
+    public static final int CHUNK_SIZE = 1 << 15;
+
+    private final int from;
+    private final int to;
+    private final Scan<T> scan;
+    private final BinaryOperator<T> merge;
+
+    private ParallelScan(int from, int to, Scan<T> scan, BinaryOperator<T> merge) {
+        this.from = from;
+        this.to = to;
+        this.scan = scan;
+        this.merge = merge;
+    }
+
+    /**
+     * @param size  the number of rows
+     * @param scan  calculates the partial result of a chunk of rows
+     * @param merge merges the partial result of the rows after another partial result, it may change and return the first
+     * @return the result of all rows
+     */
+    public static <T> T reduce(int size, Scan<T> scan, BinaryOperator<T> merge) {
+        if (size <= CHUNK_SIZE) return scan.scan(0, size);
+        return ForkJoinPool.commonPool().invoke(new ParallelScan<>(0, size, scan, merge));
+    }
+
+    @Override
+    protected T compute() {
+        if (to - from <= CHUNK_SIZE) return scan.scan(from, to);
+
+        int mid = (from + to) >>> 1;
+        ParallelScan<T> right = new ParallelScan<>(mid, to, scan, merge);
+        right.fork();
+        T left = new ParallelScan<>(from, mid, scan, merge).compute();
+        return merge.apply(left, right.join());
+    }
+
+    public interface Scan<T> {
+        /**
+         * @param from the first row
+         * @param to   the row after the last row
+         * @return the partial result of the rows
+         */
+        T scan(int from, int to);
+    }
+}
@@ -0,0 +1,102 @@
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Compares the parallel statistics, histograms and daily summaries with the sequential ones on ten years of
+ * measurements, one per minute. Every result has to be exactly the same. Also prints the time of both.
+ */
+public class ParallelScanTest {
+    private static final int VALUES = 10 * 365 * 24 * 60;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        MeasurementTable table = new MeasurementTable(VALUES);
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2013, 1, 1, 0, 0);
+        for (int i = 0; i < VALUES; i++) {
+            double celsius = 10 + 10 * Math.sin(i * 2 * Math.PI / (365 * 24 * 60)) + 5 * Math.sin(i * 2 * Math.PI / (24 * 60)) + 2 * random.nextGaussian();
+            RawMeasurement raw = new RawMeasurement();
+            raw.setStationId("1");
+            raw.setDateStamp(start.plusMinutes(i));
+            raw.setBarometer((short) (29500 + random.nextInt(1000)));
+            raw.setInsideTemp((short) (680 + random.nextInt(40)));
+            raw.setOutsideTemp((short) Math.round((celsius * 1.8 + 32) * 10));
+            raw.setOutsideHum((short) (60 + random.nextInt(40)));
+            raw.setWindSpeed((short) random.nextInt(20));
+            raw.setRainRate((short) (random.nextInt(10) < 8 ? 0 : random.nextInt(50)));
+            raw.setSunrise((short) (600 + random.nextInt(60)));
+            raw.setSunset((short) (1700 + random.nextInt(60)));
+            table.add(raw);
+        }
+
+        boolean equal = true;
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            StatisticsAccumulator sequential = table.getStatistics(channel, false);
+            StatisticsAccumulator parallel = table.getStatistics(channel, true);
+            equal &= sequential.getMean() == parallel.getMean() && sequential.getMin() == parallel.getMin()
+                    && sequential.getMax() == parallel.getMax() && sequential.getVariance() == parallel.getVariance();
+
+            ShortHistogram histogram = new ShortHistogram();
+            histogram.addAll(table.getColumn(channel), table.size());
+            ShortHistogram merged = histogram(table, channel);
+            for (int value = Short.MIN_VALUE; value <= Short.MAX_VALUE; value++) {
+                equal &= histogram.getCount((short) value) == merged.getCount((short) value);
+            }
+        }
+        System.out.println("Statistics and histograms equal: " + equal);
+
+        DailySummary sequential = new DailySummary(table, false);
+        DailySummary parallel = new DailySummary(table, true);
+        equal = sequential.size() == parallel.size();
+        for (int day = 0; day < sequential.size(); day++) {
+            equal &= sequential.getDay(day).equals(parallel.getDay(day)) && sequential.getCount(day) == parallel.getCount(day);
+            for (int channel = 0; channel < DailySummary.CHANNELS; channel++) {
+                equal &= sequential.getSum(channel, day) == parallel.getSum(channel, day)
+                        && sequential.getMin(channel, day) == parallel.getMin(channel, day)
+                        && sequential.getMax(channel, day) == parallel.getMax(channel, day)
+                        && sequential.getMinRow(channel, day) == parallel.getMinRow(channel, day)
+                        && sequential.getMaxRow(channel, day) == parallel.getMaxRow(channel, day);
+            }
+        }
+        System.out.println("Daily summaries equal: " + equal + " (" + sequential.size() + " days)");
+
+        System.out.println("Cores: " + Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < ROUNDS; round++) {
+            long time = System.nanoTime();
+            table.getStatistics(MeasurementTable.OUTSIDE_TEMP, false);
+            long statistics = System.nanoTime() - time;
+            time = System.nanoTime();
+            table.getStatistics(MeasurementTable.OUTSIDE_TEMP, true);
+            long parallelStatistics = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            new ShortHistogram().addAll(table.getColumn(MeasurementTable.OUTSIDE_TEMP), table.size());
+            long histogram = System.nanoTime() - time;
+            time = System.nanoTime();
+            histogram(table, MeasurementTable.OUTSIDE_TEMP);
+            long parallelHistogram = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            new DailySummary(table, false);
+            long summary = System.nanoTime() - time;
+            time = System.nanoTime();
+            new DailySummary(table, true);
+            long parallelSummary = System.nanoTime() - time;
+
+            System.out.printf("statistics %.2f/%.2f ms, histogram %.2f/%.2f ms, daily summary %.1f/%.1f ms (sequential/parallel)\n",
+                    statistics / 1e6, parallelStatistics / 1e6, histogram / 1e6, parallelHistogram / 1e6, summary / 1e6, parallelSummary / 1e6);
+        }
+    }
+
+    /**
+     * The parallel histogram the way Period builds it
+     */
+    private static ShortHistogram histogram(MeasurementTable table, int channel) {
+        short[] column = table.getColumn(channel);
+        return ParallelScan.reduce(table.size(), (from, to) -> {
+            ShortHistogram histogram = new ShortHistogram();
+            histogram.addAll(column, from, to);
+            return histogram;
+        }, ShortHistogram::merge);
+    }
+}
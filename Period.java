@@ -1,9 +1,16 @@
 import java.time.*;
 import java.time.temporal.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A class to contain a period of time
@@ -16,7 +23,38 @@ public class Period {
     private LocalDate endPeriod;
     public static final int DAYS = 0;
     public static final int YEARS = 1;
+
+    /**
+     * Periods of at least this many days are answered from the stored buckets, see {@link #getStatistics(int)}
+     */
+    public static final int BUCKET_DAYS = 31;
+
+    // Measurements and buckets are both read for whole days, so they cover the same records
+    private static final LocalTime END_OF_DAY = LocalTime.of(23, 59, 59);
+
+    /**
+     * Calculates the statistics, histograms and daily summaries on all cores. The results are the same as
+     * the sequential ones, see MeasurementTable.getStatistics(int, boolean) and DailySummary. Set it before
+     * any statistics are calculated, it is read from the loader and pool threads.
+     */
+    public static volatile boolean parallel = false;
+
+    private volatile MeasurementTable table;
+    private CompletableFuture<MeasurementTable> prefetched;
+    private volatile CompletableFuture<MeasurementTable> loading;
+    private volatile CompletableFuture<Aggregate> aggregating;
+    private volatile LoadProgress progress;
     private ArrayList<Measurement> measurements;
+    private DailySummary summary;
+    private volatile Aggregate aggregate;
+    private DayAnalytics analytics;
+    private final ShortHistogram[] histograms = new ShortHistogram[MeasurementTable.CHANNELS];
+
+    private static final ExecutorService loader = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "period-load");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * default constructor, sets the period to today
@@ -55,14 +93,14 @@ public class Period {
      * Simple setter for start of period
      */
     public void setStart(int year, int month, int day) {
-        beginPeriod = LocalDate.of(year, month, day);
+        setStart(LocalDate.of(year, month, day));
     }
 
     /**
      * simple setter for end of period
      */
     public void setEnd(int year, int month, int day) {
-        endPeriod = LocalDate.of(year, month, day);
+        setEnd(LocalDate.of(year, month, day));
     }
 
     /**
@@ -70,8 +108,10 @@ public class Period {
      *
      * @param beginPeriod
      */
-    public void setStart(LocalDate beginPeriod) {
+    public synchronized void setStart(LocalDate beginPeriod) {
+        if (Objects.equals(beginPeriod, this.beginPeriod)) return;
         this.beginPeriod = beginPeriod;
+        invalidate();
     }
 
     /**
@@ -79,8 +119,32 @@ public class Period {
      *
      * @param endPeriod
      */
-    public void setEnd(LocalDate endPeriod) {
+    public synchronized void setEnd(LocalDate endPeriod) {
+        if (Objects.equals(endPeriod, this.endPeriod)) return;
         this.endPeriod = endPeriod;
+        invalidate();
+    }
+
+    /**
+     * Forgets the measurements of this period and every result calculated from them, the next call loads
+     * them again. The setters call it when the range changes. Call it when the data has changed, like when
+     * new measurements of today have arrived. A load that is running is cancelled.
+     */
+    public synchronized void invalidate() {
+        CompletableFuture<MeasurementTable> loading = this.loading;
+        this.loading = null;
+        if (loading != null) loading.cancel(true);
+        CompletableFuture<Aggregate> aggregating = this.aggregating;
+        this.aggregating = null;
+        if (aggregating != null) aggregating.cancel(true);
+        table = null;
+        prefetched = null;
+        progress = null;
+        measurements = null;
+        summary = null;
+        aggregate = null;
+        analytics = null;
+        Arrays.fill(histograms, null);
     }
 
     /**
@@ -97,7 +161,135 @@ public class Period {
      * @return a list of raw measurements
      */
     public ArrayList<RawMeasurement> getRawMeasurements() {
-        return DatabaseConnection.getMeasurementsBetween(LocalDateTime.of(beginPeriod, LocalTime.of(0, 1)), LocalDateTime.of(endPeriod, LocalTime.of(23, 59)));
+        return DatabaseConnection.getMeasurementsBetween(beginPeriod.atStartOfDay(), LocalDateTime.of(endPeriod, END_OF_DAY));
+    }
+
+    /**
+     * Builds a column oriented table of all valid measurements in this period. Waits for a load that has
+     * been started with {@link #loadAsync()}, or loads the table on the calling thread.
+     *
+     * @return a filtered table of raw measurements
+     * @throws CancellationException if the load this call waited for has been cancelled
+     */
+    public MeasurementTable getTable() {
+        // Cache the table, that saves a lot of loading time
+        MeasurementTable table = this.table;
+        if (table != null) return table;
+
+        // Never called while holding the lock of this period, the loader needs it to publish the table
+        CompletableFuture<MeasurementTable> loading = loadAsync();
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            // Loading in the background failed, try it once more on this thread
+            table = loadTable(beginPeriod, endPeriod, new LoadProgress());
+            publish(loading, table);
+            return table;
+        }
+    }
+
+    /**
+     * Starts loading the measurements of this period in the background. Calling it again while the load is
+     * running returns the same future, cancelling the future stops the download.
+     *
+     * @return the future table, see {@link #getTable()}
+     */
+    public synchronized CompletableFuture<MeasurementTable> loadAsync() {
+        if (table != null) return CompletableFuture.completedFuture(table);
+        if (loading != null && !loading.isCompletedExceptionally()) return loading;
+
+        LoadProgress progress = new LoadProgress();
+        CompletableFuture<MeasurementTable> future = cancellable(progress);
+        CompletableFuture<MeasurementTable> prefetched = this.prefetched;
+        this.prefetched = null;
+        this.progress = progress;
+        this.loading = future;
+
+        LocalDate begin = beginPeriod;
+        LocalDate end = endPeriod;
+        loader.execute(() -> {
+            try {
+                MeasurementTable table = null;
+                if (prefetched != null) {
+                    try {
+                        table = prefetched.join();
+                        progress.addRecords(table.size());
+                    } catch (CancellationException | CompletionException e) {
+                        // Load it ourselves below
+                    }
+                }
+                if (table == null) {
+                    table = loadTable(begin, end, progress);
+                }
+                publish(future, table);
+                future.complete(table);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return a future that cancels the load of its progress when it is cancelled
+     */
+    private static <T> CompletableFuture<T> cancellable(LoadProgress progress) {
+        return new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                progress.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+    }
+
+    /**
+     * Caches a loaded table, unless the range has changed or the period has been invalidated while loading
+     */
+    private void publish(CompletableFuture<MeasurementTable> loading, MeasurementTable table) {
+        // invalidate() holds the same lock
+        synchronized (this) {
+            if (this.loading == loading) this.table = table;
+        }
+    }
+
+    /**
+     * @return the number of records decoded so far by the running or last load of the measurements or buckets
+     */
+    public long getLoadedRecords() {
+        LoadProgress progress = this.progress;
+        return progress == null ? 0 : progress.getRecords();
+    }
+
+    /**
+     * Hands a table that is being loaded in the background to this period, see {@link PrefetchScheduler}.
+     * The table must have been loaded with {@link #loadTable(LocalDate, LocalDate)} for the same days.
+     *
+     * @param prefetched the future table, may be null
+     */
+    public synchronized void setPrefetched(CompletableFuture<MeasurementTable> prefetched) {
+        if (this.table == null && this.loading == null)
+            this.prefetched = prefetched;
+    }
+
+    /**
+     * Loads a table with all valid measurements between 2 days
+     *
+     * @param begin the first day
+     * @param end   the last day
+     * @return a filtered table of raw measurements, empty if the database could not be reached
+     */
+    public static MeasurementTable loadTable(LocalDate begin, LocalDate end) {
+        return loadTable(begin, end, new LoadProgress());
+    }
+
+    private static MeasurementTable loadTable(LocalDate begin, LocalDate end, LoadProgress progress) {
+        MeasurementTable table = DatabaseConnection.getTableBetween(begin.atStartOfDay(), LocalDateTime.of(end, END_OF_DAY), progress);
+        if (table == null) {
+            table = new MeasurementTable();
+        }
+        table.removeInvalid();
+        return table;
     }
 
     /**
@@ -106,22 +298,221 @@ public class Period {
      * @return a filtered list of measurements
      */
     public ArrayList<Measurement> getMeasurements() {
-        // Cache measurements, that saves a lot of loading time
-        if (this.measurements != null) return this.measurements;
+        // The table is loaded before taking the lock, see getTable()
+        MeasurementTable table = getTable();
+        synchronized (this) {
+            // Cache measurements, that saves a lot of loading time
+            if (this.measurements != null) return this.measurements;
+
+            ArrayList<Measurement> measurements = new ArrayList<>(table.size());
+            for (int row = 0; row < table.size(); row++) {
+                measurements.add(new Measurement(table.getRawMeasurement(row)));
+            }
+            if (this.table == table) this.measurements = measurements;
+            return measurements;
+        }
+    }
+
+    /**
+     * Builds the rollup of this period with one row per day, used by the day level analytics
+     *
+     * @return the daily summary of all valid measurements in this period
+     */
+    public DailySummary getDailySummary() {
+        MeasurementTable table = getTable();
+        synchronized (this) {
+            if (summary != null) return summary;
+            DailySummary summary = new DailySummary(table, parallel);
+            if (this.table == table) this.summary = summary;
+            return summary;
+        }
+    }
 
+    /**
+     * Calculates all day level analytics of this period in one pass over the daily summary, once until the
+     * range or data changes
+     *
+     * @return the analytics of all valid measurements in this period
+     */
+    public DayAnalytics getDayAnalytics() {
+        DailySummary summary = getDailySummary();
+        synchronized (this) {
+            if (analytics != null) return analytics;
+            DayAnalytics analytics = new DayAnalytics(summary);
+            if (this.summary == summary) this.analytics = analytics;
+            return analytics;
+        }
+    }
 
-        ArrayList<Measurement> measurements = new ArrayList<>();
-        ArrayList<RawMeasurement> rawMeasurements = getRawMeasurements();
-        for (RawMeasurement rawMeasurement : rawMeasurements) {
-            Measurement measurement = new Measurement(rawMeasurement);
-            if (measurement.isValid()) {
-                measurements.add(measurement);
+    /**
+     * Converts one sensor channel of all measurements in this period
+     *
+     * @param channel   one of the MeasurementTable channel constants
+     * @param converter conversion from raw to real world value
+     * @return the real world values
+     */
+    public double[] getValues(int channel, MeasurementTable.Converter converter) {
+        return getTable().toDoubles(channel, converter);
+    }
+
+    /**
+     * Converts one sensor channel of all measurements in this period with the bulk conversion of ValueConverter
+     *
+     * @param channel one of the MeasurementTable channel constants
+     * @return the real world values
+     */
+    public double[] getValues(int channel) {
+        return getTable().toDoubles(channel);
+    }
+
+    /**
+     * Counts the raw values of one sensor channel of all measurements in this period, once until the range
+     * or data changes
+     *
+     * @param channel one of the MeasurementTable channel constants
+     * @return a histogram of the raw values, it must not be changed
+     */
+    public ShortHistogram getHistogram(int channel) {
+        MeasurementTable table = getTable();
+        synchronized (this) {
+            if (histograms[channel] != null) return histograms[channel];
+            ShortHistogram histogram = countValues(table, channel);
+            if (this.table == table) histograms[channel] = histogram;
+            return histogram;
+        }
+    }
+
+    private static ShortHistogram countValues(MeasurementTable table, int channel) {
+        short[] column = table.getColumn(channel);
+        if (parallel) {
+            return ParallelScan.reduce(table.size(), (from, to) -> {
+                ShortHistogram histogram = new ShortHistogram();
+                histogram.addAll(column, from, to);
+                return histogram;
+            }, ShortHistogram::merge);
+        }
+        ShortHistogram histogram = new ShortHistogram();
+        histogram.addAll(column, table.size());
+        return histogram;
+    }
+
+    /**
+     * Calculates a value derived from two sensor channels for all measurements in this period
+     *
+     * @param first     the channel passed as first argument
+     * @param second    the channel passed as second argument
+     * @param converter conversion from raw values to real world value
+     * @return the real world values
+     */
+    public double[] getValues(int first, int second, MeasurementTable.PairConverter converter) {
+        return getTable().toDoubles(first, second, converter);
+    }
+
+    /**
+     * Calculates a value derived from two sensor channels for all measurements in this period at once
+     *
+     * @param first     the channel passed as first column
+     * @param second    the channel passed as second column
+     * @param converter bulk conversion from raw columns to real world values
+     * @return the real world values
+     */
+    public double[] getValues(int first, int second, MeasurementTable.ColumnPairConverter converter) {
+        return getTable().toDoubles(first, second, converter);
+    }
+
+
+    /**
+     * Combines the stored buckets of this period, without loading its measurements. Waits for a load that
+     * has been started with {@link #loadAggregateAsync()}.
+     *
+     * @return the aggregate of all valid measurements in this period, empty if the database could not be reached
+     * @throws CancellationException if the load this call waited for has been cancelled
+     */
+    public Aggregate getAggregate() {
+        Aggregate aggregate = this.aggregate;
+        if (aggregate != null) return aggregate;
+
+        // Not while holding the lock of this period, like getTable()
+        try {
+            return loadAggregateAsync().join();
+        } catch (CompletionException e) {
+            return new Aggregate();
+        }
+    }
+
+    /**
+     * Starts combining the stored buckets of this period in the background, downloading the days that are
+     * not stored yet. The progress is counted like the one of {@link #loadAsync()}, cancelling the future
+     * stops the download.
+     *
+     * @return the future aggregate, see {@link #getAggregate()}
+     */
+    public synchronized CompletableFuture<Aggregate> loadAggregateAsync() {
+        if (aggregate != null) return CompletableFuture.completedFuture(aggregate);
+        if (aggregating != null && !aggregating.isCompletedExceptionally()) return aggregating;
+
+        LoadProgress progress = new LoadProgress();
+        CompletableFuture<Aggregate> future = cancellable(progress);
+        this.progress = progress;
+        this.aggregating = future;
+
+        LocalDate begin = beginPeriod;
+        LocalDate end = endPeriod;
+        loader.execute(() -> {
+            try {
+                // Whole days, so no day at the edges has to be read from its records
+                Aggregate aggregate = DatabaseConnection.getAggregateBetween(begin.atStartOfDay(), LocalDateTime.of(end, END_OF_DAY), progress);
+                synchronized (this) {
+                    if (this.aggregating == future) {
+                        if (aggregate != null) this.aggregate = aggregate;
+                        // Do not remember the failure, the next call can try again
+                        else this.aggregating = null;
+                    }
+                }
+                future.complete(aggregate != null ? aggregate : new Aggregate());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
             }
+        });
+        return future;
+    }
+
+    /**
+     * @return true if the statistics of this period are combined from the stored buckets, it only depends on
+     * the length of the period
+     */
+    public boolean usesBuckets() {
+        return numberOfDays() >= BUCKET_DAYS;
+    }
+
+    /**
+     * Combines the stored buckets for long periods, see {@link #usesBuckets()}, otherwise scans the measurements
+     *
+     * @param channel a MeasurementTable channel, or one of the derived Aggregate channels
+     * @return mean, extremes and standard deviation of the channel, without median and mode
+     */
+    public StatisticsAccumulator getStatistics(int channel) {
+        if (channel < MeasurementTable.CHANNELS && !usesBuckets()) {
+            return getTable().getStatistics(channel, parallel);
         }
-        this.measurements = measurements;
-        return measurements;
+        return getAggregate().getStatistics(channel);
     }
 
+    public double mean(int channel) {
+        return getStatistics(channel).getMean();
+    }
+
+    public double highest(int channel) {
+        return getStatistics(channel).getMax();
+    }
+
+    public double lowest(int channel) {
+        return getStatistics(channel).getMin();
+    }
+
+    public double standardDeviation(int channel) {
+        return getStatistics(channel).getStandardDeviation();
+    }
 
     public static double mean(ArrayList<Double> numbers) {        //Serkan Aydin
         // Check if there are actually numbers
@@ -186,6 +577,8 @@ public class Period {
         if (numbers == null || numbers.size() < 1) return 0;
 
         double median;
+        // Sort a copy, the caller's list keeps its order
+        numbers = new ArrayList<>(numbers);
         Collections.sort(numbers);
         int length = numbers.size();
         int mid = length / 2;
@@ -214,307 +607,55 @@ public class Period {
     }
 
 
-    public static ArrayList<Double> maxTempAllDay(ArrayList<Measurement> measurements) {     //Ruben Claassen
+    public static ArrayList<Double> maxTempAllDay(DailySummary summary) {     //Ruben Claassen
         //gets the highest temperature value of each day and adds them to a list
-        ArrayList<Double> maxTemps = new ArrayList<>();
-        double maxTemp = 0;
-        LocalDate dayCheck = LocalDate.now();
-        if (measurements.size() > 0) {
-            dayCheck = measurements.get(0).getDateStamp().toLocalDate();
-        }
-
-
-        for (Measurement measurement : measurements) {
-            if (measurement.getDateStamp().toLocalDate().equals(dayCheck)) {
-                if (measurement.getOutsideTemp() >= maxTemp) {
-                    maxTemp = measurement.getOutsideTemp();
-                }
-            } else {
-                maxTemps.add(maxTemp);
-                maxTemp = measurement.getOutsideTemp();
-                dayCheck = measurement.getDateStamp().toLocalDate();
-
-            }
-        }
-        //adds last day since the loop skips it
-        maxTemps.add(maxTemp);
-        return maxTemps;
+        Analytics.MaxTemperatures maxTemps = new Analytics.MaxTemperatures();
+        Analytics.scan(summary, maxTemps);
+        return maxTemps.finish();
     }
 
 
     public boolean hasHeatWave() {                                        // Ruben Claassen
-        // A heatwave occurs when the maximum temperature of at least
-        // 5 days in a row are 25 C or higher and at least 3 of those are 30 C or higher
-        ArrayList<Measurement> measurements = getMeasurements();
-        ArrayList<Double> maxTemps = maxTempAllDay(measurements);
-
-        boolean heatwave = false;
-        int amountOfDays = maxTemps.size();
-        if (amountOfDays > 0) {
-            for (int i = 0; i < amountOfDays; i++) {
-                if (maxTemps.get(i) >= 25) {
-                    int nextCheck = 0;
-                    int summerDay = 0;
-                    int tropicalDay = 0;
-                    while (i + nextCheck < amountOfDays) {
-                        if (maxTemps.get(i + nextCheck) >= 25) {
-                            summerDay++;
-                        } else {
-                            break;
-                        }
-                        if (maxTemps.get(i + nextCheck) >= 30) {
-                            tropicalDay++;
-                        }
-                        nextCheck++;
-                    }
-                    if (summerDay >= 5 && tropicalDay >= 3) {
-                        heatwave = true;
-                    }
-                }
-            }
-        }
-        return heatwave;
+        return getDayAnalytics().hasHeatWave();
     }
 
 
     public DataObject tempDifference() {                    //Koen Pothof
-        ArrayList<Measurement> measures = getMeasurements();
-        // Check if there are actually measurements
-        if (measurements == null || measurements.size() < 1) return null;
-
-        ArrayList<Double> numbers = new ArrayList<>();
-
-        for (int i = 0; i < measures.size(); i++) {
-            numbers.add(measures.get(i).getOutsideTemp());
-            numbers.add(measures.get(i).getInsideTemp());
-        }
-
-        LocalDateTime day = measures.get(0).getDateStamp();
-        double outsideTemp = numbers.get(0);
-        double insideTemp = numbers.get(0);
-        double maxDiff = 0;
-
-        for (int j = 1; j < measures.size(); j++) {
-            if (measures.get(j).getDateStamp().getDayOfMonth() != measures.get(j - 1).getDateStamp().getDayOfMonth()) {
-                if (numbers.get(j - 1) < outsideTemp) {
-                    outsideTemp = numbers.get(j - 1);
-                }
-                if (numbers.get(j - 1) > insideTemp) {
-                    insideTemp = numbers.get(j - 1);
-                }
-                if (maxDiff < insideTemp - outsideTemp) {
-                    maxDiff = Math.abs(insideTemp - outsideTemp);
-                    day = measures.get(j - 1).getDateStamp();
-                }
-            }
-        }
-        return new DataObject(day, maxDiff, outsideTemp, insideTemp);
+        return getDayAnalytics().getTempDifference();
     }
 
     public DataObject maxDiff() {                                    //Tristan van der Put
-        ArrayList<Measurement> measurements = getMeasurements();
-        // Check if there are actually measurements
-        if (measurements == null || measurements.size() < 1) return null;
-
-        double highestDiff = 0;
-        LocalDate day = measurements.get(0).getDateStamp().toLocalDate();
-
-        for (Measurement measurement : measurements) {
-            double diff = Math.abs(measurement.getOutsideTemp() - measurement.getWindChill());
-            if (diff > highestDiff) {
-                highestDiff = diff;
-                day = measurement.getDateStamp().toLocalDate();
-            }
-        }
-
-        return new DataObject(day, highestDiff);
-
+        return getDayAnalytics().getMaxDiff();
     }
 
 
     public double degreeDay() {                        //Meindert Kempe
-        double degreeDays = 0;
-        // reference temperature to calculate degree days against
-        final double referenceTemp = 18.0;
-
-        ArrayList<Measurement> measurements = getMeasurements();
-
-        // Check if there are actually measurements
-        if (measurements == null || measurements.size() < 1) return 0;
-
-        LocalDate lastday = measurements.get(0).getDateStamp().toLocalDate();
-        double sum = 0;
-        int count = 0;
-
-        for (Measurement measurement : measurements) {
-            // When we get to the next day, calculate the degree days for that day
-            if (!measurement.getDateStamp().toLocalDate().equals(lastday)) {
-                double avg = sum / count;
-                degreeDays += Math.max(referenceTemp - avg, 0);
-                lastday = measurement.getDateStamp().toLocalDate();
-                sum = 0;
-                count = 0;
-            }
-            sum += measurement.getOutsideTemp();
-            count++;
-        }
-
-        // Add last day
-        double avg = sum / count;
-        degreeDays += Math.max(referenceTemp - avg, 0);
-
-        return degreeDays;
+        return getDayAnalytics().getDegreeDays();
     }
 
 
     public String monthWithMostRain() {                                 //Lucas Kuijsters
-        ArrayList<Measurement> measurements = getMeasurements();
-        // Check if there are actually measurements
-        if (measurements == null || measurements.size() < 1) return "";
-
-        double[] months = new double[12];
-
-        for (Measurement measurement : measurements) {
-            if (measurement.getRainRate() != 0) {
-                int m = measurement.getDateStamp().get(ChronoField.MONTH_OF_YEAR);
-                months[m - 1] += measurement.getRainRate();
-            }
-        }
-
-        double highestRain = months[0];
-        int highestMonth = 0;
-        if (measurements.size() < 1) return "Invalid value.";
-
-        for (int i = 0; i < months.length; i++) {
-            if (highestRain < months[i]) {
-                highestRain = months[i];
-                highestMonth = i;
-            }
-        }
-        String month = Month.of(highestMonth + 1).name().toLowerCase();
-        return month.replaceFirst(".", (month.charAt(0) + "").toUpperCase());
+        return getDayAnalytics().getMonthWithMostRain();
     }
 
-    //AvgOutside temp >=15 && <=30,                                    //Serkan Aydin
-    //Rainrate <5
-    //avgWindspeed <=5
-    //outsideHum <80
-    public int niceWeather() {
-        ArrayList<Measurement> measurements = getMeasurements();
-        // Check if there are actually measurements
-        if (measurements == null || measurements.size() < 1) return 0;
-
-        int daysNiceWeather = 0;
-        double totalOutsidetemp = 0;
-        double totalRainrate = 0;
-        double totalOutsideHum = 0;
-        int amountMeasurements = 0;
-
-        //First day of all measurements are put into lastday
-        LocalDate lastday = measurements.get(0).getDateStamp().toLocalDate();
-
-        //Goes through all measurements
-        for (Measurement measurement : measurements) {
-            //Check if current measurement is equal to lastday
-            if (measurement.getDateStamp().toLocalDate().equals(lastday)) {
-
-                totalOutsidetemp += measurement.getOutsideTemp();
-                totalRainrate += measurement.getRainRate();
-                totalOutsideHum += measurement.getOutsideHum();
-                amountMeasurements++;
-            } else {
-                double averageOutsidetemp = totalOutsidetemp / amountMeasurements;
-                double avgRainrate = totalRainrate / amountMeasurements;
-                double avgOutsideHum = totalOutsideHum / amountMeasurements;
-
-
-                if (averageOutsidetemp >= 15 && averageOutsidetemp <= 30 && avgRainrate < 5
-                        && measurement.getAvgWindSpeed() <= 5 && avgOutsideHum < 80) {
-
-                    daysNiceWeather++;
-
-                }
-
-                lastday = measurement.getDateStamp().toLocalDate();
-                //newday of measurement is put in lastday
-
-                amountMeasurements = 0;
-                totalOutsideHum = 0;
-                totalOutsidetemp = 0;
-                totalRainrate = 0;
-            }
-
-
-        }
-        return daysNiceWeather;
+    public int niceWeather() {                                          //Serkan Aydin
+        return getDayAnalytics().getNiceWeatherDays();
     }
 
     public DataObject earliestSunset() {
-        ArrayList<Measurement> measurements = getMeasurements();
-
-        if (measurements == null || measurements.size() < 1) return null;
-
-
-        LocalTime earliest = measurements.get(0).getSunset();
-        LocalDate date = measurements.get(0).getDateStamp().toLocalDate();
-        for (Measurement measurement : measurements) {
-            if (measurement.getSunset().isBefore(earliest)) {
-                earliest = measurement.getSunset();
-                date = measurement.getDateStamp().toLocalDate();
-            }
-        }
-        return new DataObject(date, earliest);
+        return getDayAnalytics().getEarliestSunset();
     }
 
     public DataObject latestSunset() {
-        ArrayList<Measurement> measurements = getMeasurements();
-
-        if (measurements == null || measurements.size() < 1) return null;
-
-
-        LocalTime latest = measurements.get(0).getSunset();
-        LocalDate date = measurements.get(0).getDateStamp().toLocalDate();
-        for (Measurement measurement : measurements) {
-            if (measurement.getSunset().isAfter(latest)) {
-                latest = measurement.getSunset();
-                date = measurement.getDateStamp().toLocalDate();
-            }
-        }
-        return new DataObject(date, latest);
+        return getDayAnalytics().getLatestSunset();
     }
 
     public DataObject earliestSunrise() {
-        ArrayList<Measurement> measurements = getMeasurements();
-
-        if (measurements == null || measurements.size() < 1) return null;
-
-
-        LocalTime earliest = measurements.get(0).getSunrise();
-        LocalDate date = measurements.get(0).getDateStamp().toLocalDate();
-        for (Measurement measurement : measurements) {
-            if (measurement.getSunrise().isBefore(earliest)) {
-                earliest = measurement.getSunrise();
-                date = measurement.getDateStamp().toLocalDate();
-            }
-        }
-        return new DataObject(date, earliest);
+        return getDayAnalytics().getEarliestSunrise();
     }
 
     public DataObject latestSunrise() {
-        ArrayList<Measurement> measurements = getMeasurements();
-
-        if (measurements == null || measurements.size() < 1) return null;
-
-
-        LocalTime latest = measurements.get(0).getSunrise();
-        LocalDate date = measurements.get(0).getDateStamp().toLocalDate();
-        for (Measurement measurement : measurements) {
-            if (measurement.getSunrise().isAfter(latest)) {
-                latest = measurement.getSunrise();
-                date = measurement.getDateStamp().toLocalDate();
-            }
-        }
-        return new DataObject(date, latest);
+        return getDayAnalytics().getLatestSunrise();
     }
 
 
@@ -0,0 +1,93 @@
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the measurements of periods the user is likely to pick in the background, so confirming a
+ * period in the menu does not have to wait for the download. Loaded periods are handed to a
+ * {@link Period} with {@link #take(LocalDate, LocalDate)}.
+ */
+public class PrefetchScheduler {
+
+    /**
+     * Time to wait after the last edit of a range before it is prefetched, so scrolling through values does
+     * not start a download for every value passed
+     */
+    public static final int EDIT_DELAY = 750;
+
+    /**
+     * Maximum number of prefetched periods kept in memory
+     */
+    public static final int MAX_PERIODS = 4;
+
+    private final ScheduledExecutorService executor;
+    private final LinkedHashMap<String, CompletableFuture<MeasurementTable>> prefetched;
+    private ScheduledFuture<?> pendingEdit;
+
+    public PrefetchScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, "prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.executor = executor;
+
+        this.prefetched = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<MeasurementTable>> eldest) {
+                return size() > MAX_PERIODS;
+            }
+        };
+    }
+
+    /**
+     * Starts loading a period in the background, unless it is already loaded or loading
+     *
+     * @param begin the first day of the period
+     * @param end   the last day of the period
+     * @return the future table of the period
+     */
+    public synchronized CompletableFuture<MeasurementTable> prefetch(LocalDate begin, LocalDate end) {
+        String key = begin + "/" + end;
+        CompletableFuture<MeasurementTable> future = prefetched.get(key);
+        if (future == null || future.isCompletedExceptionally()) {
+            future = CompletableFuture.supplyAsync(() -> Period.loadTable(begin, end), executor);
+            prefetched.put(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * Prefetches the range the user is editing, once it has not changed for {@link #EDIT_DELAY} milliseconds.
+     * A range that is edited again before that time replaces the previous one.
+     *
+     * @param begin the first day of the range being edited
+     * @param end   the last day of the range being edited
+     */
+    public synchronized void prefetchEdited(LocalDate begin, LocalDate end) {
+        if (pendingEdit != null)
+            pendingEdit.cancel(false);
+        pendingEdit = null;
+        if (begin.isAfter(end))
+            return;
+        pendingEdit = executor.schedule(() -> prefetch(begin, end), EDIT_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes a prefetched period, so its table can be handed to a Period
+     *
+     * @param begin the first day of the period
+     * @param end   the last day of the period
+     * @return the future table of the period, or null if it has not been prefetched
+     */
+    public synchronized CompletableFuture<MeasurementTable> take(LocalDate begin, LocalDate end) {
+        return prefetched.remove(begin + "/" + end);
+    }
+}
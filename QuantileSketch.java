@@ -0,0 +1,169 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * KLL quantile sketch. Keeps a bounded number of values, each representing 2^level of the original values,
+ * so the median of millions of values can be estimated in a few kilobytes. Sketches of separate chunks or
+ * time buckets are merged into a sketch of all values.
+ * <p>
+ * The rank error shrinks with k. With the default k of 200 the estimated median is within about 1% of the
+ * ranks of the true median, see QuantileSketchTest.
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_FACTOR = 2.0 / 3.0;
+
+    private final int k;
+    private final Random random = new Random(0x5753);
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int[] capacities = new int[0];
+    private int totalCapacity;
+    private int retained;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k the size of the largest level, a larger k gives a smaller error
+     */
+    public QuantileSketch(int k) {
+        this.k = Math.max(k, 8);
+        updateCapacities();
+        levels[0] = new double[capacities[0]];
+    }
+
+    /**
+     * Adds one value to the sketch
+     */
+    public void accept(double value) {
+        append(0, value);
+        count++;
+        compress();
+    }
+
+    /**
+     * Adds all values of another sketch to this one
+     *
+     * @param other the sketch to merge, it is not changed
+     * @return this sketch
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        count += other.count;
+        compress();
+        return this;
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimates a quantile
+     *
+     * @param fraction the rank to estimate, 0.5 is the median
+     * @return the estimated value at that rank, 0 if the sketch is empty
+     */
+    public double getQuantile(double fraction) {
+        int retained = 0;
+        for (int size : sizes) {
+            retained += size;
+        }
+        if (retained == 0) return 0;
+
+        // Sort the retained values together with their weight
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        Integer[] order = new Integer[retained];
+        int index = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                values[index] = levels[level][i];
+                weights[index] = 1L << level;
+                order[index] = index;
+                index++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long total = 0;
+        for (long weight : weights) {
+            total += weight;
+        }
+        double rank = fraction * total;
+        long seen = 0;
+        for (int i : order) {
+            seen += weights[i];
+            if (seen > rank) return values[i];
+        }
+        return values[order[retained - 1]];
+    }
+
+    /**
+     * The top level holds k values, every level below it 2/3 of the level above
+     */
+    private void updateCapacities() {
+        capacities = new int[levels.length];
+        totalCapacity = 0;
+        for (int level = 0; level < levels.length; level++) {
+            int depth = levels.length - 1 - level;
+            capacities[level] = Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_FACTOR, depth)));
+            totalCapacity += capacities[level];
+        }
+    }
+
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            int oldLength = levels.length;
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            updateCapacities();
+            for (int i = oldLength; i <= level; i++) {
+                levels[i] = new double[capacities[i]];
+            }
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(2, levels[level].length * 2));
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+
+    /**
+     * Halves the lowest full level until the sketch fits its capacity again. Lower levels may grow past their
+     * own capacity while there is room elsewhere, so they are sorted in larger batches.
+     */
+    private void compress() {
+        while (retained > totalCapacity) {
+            int level = 0;
+            while (sizes[level] < capacities[level]) {
+                level++;
+            }
+
+            double[] values = levels[level];
+            int size = sizes[level];
+            Arrays.sort(values, 0, size);
+
+            // An odd value out stays on this level
+            int kept = size % 2;
+            int offset = kept + random.nextInt(2);
+            sizes[level] = kept;
+            retained -= size - kept;
+            for (int i = offset; i < size; i += 2) {
+                append(level + 1, values[i]);
+            }
+        }
+    }
+}
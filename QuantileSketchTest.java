@@ -0,0 +1,84 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the exact histogram path and the error of the approximate sketches against the sorted values,
+ * on ten years of outside temperatures with one measurement per minute. Also merges sketches of separate
+ * chunks, like the days of a period.
+ */
+public class QuantileSketchTest {
+    private static final int VALUES = 10 * 365 * 24 * 60;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        short[] raw = new short[VALUES];
+        double[] values = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            double celsius = 10 + 10 * Math.sin(i * 2 * Math.PI / (365 * 24 * 60)) + 5 * Math.sin(i * 2 * Math.PI / (24 * 60)) + 2 * random.nextGaussian();
+            raw[i] = (short) Math.round((celsius * 1.8 + 32) * 10);
+            values[i] = ValueConverter.temperature(raw[i]);
+        }
+
+        long start = System.nanoTime();
+        StatisticsAccumulator sorted = StatisticsAccumulator.of(values);
+        System.out.printf("Sorted:      %4d ms, median %.4f, mode %.4f, mean %.6f, std dev %.6f\n", (System.nanoTime() - start) / 1_000_000,
+                sorted.getMedian(), sorted.getMode(), sorted.getMean(), sorted.getStandardDeviation());
+
+        start = System.nanoTime();
+        ShortHistogram histogram = new ShortHistogram();
+        histogram.addAll(raw, raw.length);
+        StatisticsAccumulator exact = StatisticsAccumulator.of(histogram, ValueConverter::temperature);
+        System.out.printf("Histogram:   %4d ms, median %.4f, mode %.4f, mean %.6f, std dev %.6f\n", (System.nanoTime() - start) / 1_000_000,
+                exact.getMedian(), exact.getMode(), exact.getMean(), exact.getStandardDeviation());
+
+        start = System.nanoTime();
+        StatisticsAccumulator approximate = StatisticsAccumulator.approximate(values);
+        System.out.printf("Sketches:    %4d ms, median %.4f, mode %.4f\n", (System.nanoTime() - start) / 1_000_000,
+                approximate.getMedian(), approximate.getMode());
+
+        // One sketch per day, merged afterwards
+        start = System.nanoTime();
+        StatisticsAccumulator merged = StatisticsAccumulator.approximate();
+        for (int day = 0; day < VALUES; day += 24 * 60) {
+            StatisticsAccumulator chunk = StatisticsAccumulator.approximate();
+            chunk.acceptAll(Arrays.copyOfRange(values, day, day + 24 * 60));
+            merged.combine(chunk);
+        }
+        System.out.printf("Merged days: %4d ms, median %.4f, mode %.4f, mean %.6f\n", (System.nanoTime() - start) / 1_000_000,
+                merged.getMedian(), merged.getMode(), merged.getMean());
+
+        double[] copy = values.clone();
+        Arrays.sort(copy);
+        System.out.printf("Median rank error: sketch %.3f%%, merged %.3f%%\n",
+                rankError(copy, approximate.getMedian()) * 100, rankError(copy, merged.getMedian()) * 100);
+        System.out.printf("Mode count: exact %d, sketch %d, merged %d (max error %d)\n",
+                histogram.getCount(histogram.getMode()), count(copy, approximate.getMode()), count(copy, merged.getMode()),
+                VALUES / (FrequencySketch.DEFAULT_COUNTERS + 1));
+    }
+
+    /**
+     * @return how far the rank of the value is from the middle, as a fraction of all values
+     */
+    private static double rankError(double[] sorted, double value) {
+        int low = lowerBound(sorted, value);
+        int high = lowerBound(sorted, Math.nextUp(value));
+        int mid = sorted.length / 2;
+        if (mid >= low && mid <= high) return 0;
+        return Math.min(Math.abs(mid - low), Math.abs(mid - high)) / (double) sorted.length;
+    }
+
+    private static int count(double[] sorted, double value) {
+        return lowerBound(sorted, Math.nextUp(value)) - lowerBound(sorted, value);
+    }
+
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,387 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The measurements of the last days, like {@link Period#Period(int)}, kept up to date one measurement at a time.
+ * Adding a measurement expires the ones of days that fell out of the window, every measurement is added and
+ * expired once, so a refresh never scans the window again. Reading the window expires against today as well,
+ * so days keep leaving it when the feed stalls.
+ * <p>
+ * Every channel keeps exact sums of its raw values, which are subtracted again when a measurement expires,
+ * and a monotonic deque for its minimum and maximum. The heat wave check keeps the streaks of summer days in
+ * the window, with the rules of {@link Analytics.HeatWave}. Measurements have to be added in order, older ones are ignored, only a table can still fill in
+ * the days before the measurements that are already in the window.
+ */
+public class RollingWindow implements LiveFeed.Listener {
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final int days;
+    private final Clock clock;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ZoneRules rules = zone.getRules();
+
+    // Ring buffer of the measurements in the window, indexed by sequence number & mask
+    private long[] epochSeconds = new long[1024];
+    private final short[][] channels = new short[MeasurementTable.CHANNELS][1024];
+    private int mask = 1023;
+    private long head;
+    private long tail;
+
+    private final long[] sums = new long[MeasurementTable.CHANNELS];
+    private final long[] sumsOfSquares = new long[MeasurementTable.CHANNELS];
+    private final SequenceDeque[] minima = new SequenceDeque[MeasurementTable.CHANNELS];
+    private final SequenceDeque[] maxima = new SequenceDeque[MeasurementTable.CHANNELS];
+
+    // Days with measurements in the window, and the streaks of summer days among them, oldest first
+    private final ArrayDeque<Day> dayMaxima = new ArrayDeque<>();
+    private final ArrayDeque<Streak> streaks = new ArrayDeque<>();
+    private int heatWaves;
+
+    /**
+     * @param days the number of days before today to keep, like {@link Period#Period(int)}
+     */
+    public RollingWindow(int days) {
+        this(days, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock gives today, for tests
+     */
+    RollingWindow(int days, Clock clock) {
+        this.days = days;
+        this.clock = clock;
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            minima[channel] = new SequenceDeque();
+            maxima[channel] = new SequenceDeque();
+        }
+    }
+
+    /**
+     * Fills the window from a table, for example the one of a period of the same days. Measurements that were
+     * added before the table arrived stay, the window is rebuilt with the table before them.
+     *
+     * @param table the measurements, in order
+     */
+    public synchronized void addAll(MeasurementTable table) {
+        int count = (int) (tail - head);
+        long[] newerEpochSeconds = new long[count];
+        short[][] newer = new short[MeasurementTable.CHANNELS][count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) (head + i) & mask;
+            newerEpochSeconds[i] = epochSeconds[index];
+            for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+                newer[channel][i] = channels[channel][index];
+            }
+        }
+        clear();
+
+        // From the first newer measurement on the window already has the measurements
+        for (int row = 0; row < table.size(); row++) {
+            if (count > 0 && table.getEpochSecond(row) >= newerEpochSeconds[0]) break;
+            if (!accept(table.getEpochSecond(row))) continue;
+            for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+                channels[channel][(int) tail & mask] = table.get(channel, row);
+            }
+            added();
+        }
+        for (int i = 0; i < count; i++) {
+            if (!accept(newerEpochSeconds[i])) continue;
+            for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+                channels[channel][(int) tail & mask] = newer[channel][i];
+            }
+            added();
+        }
+    }
+
+    /**
+     * Adds one measurement and expires the measurements of days before the window
+     *
+     * @param raw the measurement, ignored if it is not newer than the newest one in the window
+     */
+    public synchronized void add(RawMeasurement raw) {
+        if (!accept(raw.getDateStamp().atZone(zone).toEpochSecond())) return;
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            channels[channel][(int) tail & mask] = MeasurementTable.get(raw, channel);
+        }
+        added();
+    }
+
+    @Override
+    public void measurementsReceived(List<Measurement> measurements) {
+        for (Measurement measurement : measurements) {
+            add(measurement.getRawMeasurement());
+        }
+    }
+
+    /**
+     * Expires old measurements and makes room for a new one at the tail
+     *
+     * @return false if the measurement is not newer than the newest one
+     */
+    private boolean accept(long epochSecond) {
+        if (head < tail && epochSecond <= epochSeconds[(int) (tail - 1) & mask]) return false;
+
+        expireBefore(epochDay(epochSecond) - days);
+        if (tail - head > mask) grow();
+        epochSeconds[(int) tail & mask] = epochSecond;
+        return true;
+    }
+
+    /**
+     * Empties the window
+     */
+    private void clear() {
+        head = tail;
+        Arrays.fill(sums, 0);
+        Arrays.fill(sumsOfSquares, 0);
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            minima[channel].clear();
+            maxima[channel].clear();
+        }
+        dayMaxima.clear();
+        streaks.clear();
+        heatWaves = 0;
+    }
+
+    /**
+     * Expires the measurements and days before the first day of the window
+     */
+    private void expireBefore(long firstDay) {
+        while (head < tail && epochDay(epochSeconds[(int) head & mask]) < firstDay) {
+            expire();
+        }
+        while (!dayMaxima.isEmpty() && dayMaxima.peekFirst().epochDay < firstDay) {
+            expireDay();
+        }
+    }
+
+    /**
+     * Expires the days that fell out of the window since the newest measurement
+     */
+    private void expireToday() {
+        expireBefore(LocalDate.now(clock).toEpochDay() - days);
+    }
+
+    /**
+     * Adds the measurement at the tail to the sums, the deques and the streaks
+     */
+    private void added() {
+        long sequence = tail++;
+        int index = (int) sequence & mask;
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            short[] column = channels[channel];
+            short value = column[index];
+            sums[channel] += value;
+            sumsOfSquares[channel] += value * value;
+
+            // Values that can never be the extreme again are dropped from the back
+            SequenceDeque min = minima[channel];
+            while (!min.isEmpty() && column[(int) min.peekLast() & mask] >= value) min.pollLast();
+            min.addLast(sequence);
+            SequenceDeque max = maxima[channel];
+            while (!max.isEmpty() && column[(int) max.peekLast() & mask] <= value) max.pollLast();
+            max.addLast(sequence);
+        }
+        addDayMaximum(epochDay(epochSeconds[index]), channels[MeasurementTable.OUTSIDE_TEMP][index]);
+    }
+
+    /**
+     * Removes the oldest measurement
+     */
+    private void expire() {
+        long sequence = head++;
+        int index = (int) sequence & mask;
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            short value = channels[channel][index];
+            sums[channel] -= value;
+            sumsOfSquares[channel] -= value * value;
+            if (minima[channel].peekFirst() == sequence) minima[channel].pollFirst();
+            if (maxima[channel].peekFirst() == sequence) maxima[channel].pollFirst();
+        }
+    }
+
+    private void grow() {
+        int capacity = (mask + 1) * 2;
+        long[] newEpochSeconds = new long[capacity];
+        short[][] newChannels = new short[MeasurementTable.CHANNELS][capacity];
+        // Sequence numbers stay the same, only their place in the larger buffer changes
+        for (long sequence = head; sequence < tail; sequence++) {
+            int from = (int) sequence & mask;
+            int to = (int) sequence & (capacity - 1);
+            newEpochSeconds[to] = epochSeconds[from];
+            for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+                newChannels[channel][to] = channels[channel][from];
+            }
+        }
+        epochSeconds = newEpochSeconds;
+        System.arraycopy(newChannels, 0, channels, 0, MeasurementTable.CHANNELS);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Updates the maximum temperature of the newest day. Measurements arrive in order, so only the newest
+     * day changes, and its maximum only goes up.
+     */
+    private void addDayMaximum(long epochDay, short outsideTemp) {
+        Day day = dayMaxima.peekLast();
+        if (day == null || day.epochDay != epochDay) {
+            // A streak goes on over consecutive days with measurements, like in a daily summary
+            boolean continues = day != null && day.kind >= Day.SUMMER;
+            day = new Day(epochDay, continues);
+            dayMaxima.addLast(day);
+        } else if (outsideTemp <= day.max) {
+            return;
+        }
+        day.max = outsideTemp;
+
+        double temp = ValueConverter.temperature(outsideTemp);
+        int kind = Analytics.HeatWave.isTropicalDay(temp) ? Day.TROPICAL : Analytics.HeatWave.isSummerDay(temp) ? Day.SUMMER : Day.NORMAL;
+        if (kind <= day.kind) return;
+
+        if (day.kind < Day.SUMMER) {
+            if (!day.continues || streaks.isEmpty()) streaks.addLast(new Streak());
+            streaks.peekLast().summerDays++;
+        }
+        if (kind == Day.TROPICAL) streaks.peekLast().tropicalDays++;
+        day.kind = kind;
+        update(streaks.peekLast());
+    }
+
+    private void expireDay() {
+        Day day = dayMaxima.pollFirst();
+        if (day.kind < Day.SUMMER) return;
+
+        // The oldest summer day is always the first day of the oldest streak
+        Streak streak = streaks.peekFirst();
+        streak.summerDays--;
+        if (day.kind == Day.TROPICAL) streak.tropicalDays--;
+        update(streak);
+        if (streak.summerDays == 0) streaks.pollFirst();
+    }
+
+    private void update(Streak streak) {
+        boolean heatWave = Analytics.HeatWave.isHeatWave(streak.summerDays, streak.tropicalDays);
+        if (heatWave != streak.heatWave) heatWaves += heatWave ? 1 : -1;
+        streak.heatWave = heatWave;
+    }
+
+    private long epochDay(long epochSecond) {
+        int offset = rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        return Math.floorDiv(epochSecond + offset, SECONDS_PER_DAY);
+    }
+
+    /**
+     * @return the number of measurements in the window
+     */
+    public synchronized int size() {
+        expireToday();
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return the day of the oldest measurement in the window, null if it is empty
+     */
+    public synchronized LocalDate getBegin() {
+        expireToday();
+        return head < tail ? LocalDate.ofEpochDay(epochDay(epochSeconds[(int) head & mask])) : null;
+    }
+
+    /**
+     * @param channel one of the {@link MeasurementTable} channel constants
+     * @return mean, extremes and standard deviation of the channel in the window, without median and mode
+     */
+    public synchronized StatisticsAccumulator getStatistics(int channel) {
+        expireToday();
+        if (head == tail) return new StatisticsAccumulator();
+        return MeasurementTable.getStatistics(channel, tail - head, sums[channel], sumsOfSquares[channel],
+                channels[channel][(int) minima[channel].peekFirst() & mask],
+                channels[channel][(int) maxima[channel].peekFirst() & mask]);
+    }
+
+    /**
+     * @return whether the window has a heat wave, see {@link Analytics.HeatWave}
+     */
+    public synchronized boolean hasHeatWave() {
+        expireToday();
+        return heatWaves > 0;
+    }
+
+    /**
+     * The highest outside temperature of a day with measurements
+     */
+    private static class Day {
+        static final int NORMAL = 0;
+        static final int SUMMER = 1;
+        static final int TROPICAL = 2;
+
+        final long epochDay;
+        // Whether the day before with measurements was a summer day
+        final boolean continues;
+        short max = Short.MIN_VALUE;
+        int kind = NORMAL;
+
+        Day(long epochDay, boolean continues) {
+            this.epochDay = epochDay;
+            this.continues = continues;
+        }
+    }
+
+    /**
+     * Consecutive summer days in the window
+     */
+    private static class Streak {
+        int summerDays;
+        int tropicalDays;
+        boolean heatWave;
+    }
+
+    /**
+     * A double ended queue of sequence numbers, without boxing
+     */
+    private static class SequenceDeque {
+        private long[] items = new long[64];
+        private long first;
+        private long last;
+
+        boolean isEmpty() {
+            return first == last;
+        }
+
+        long peekFirst() {
+            return items[(int) first & (items.length - 1)];
+        }
+
+        long peekLast() {
+            return items[(int) (last - 1) & (items.length - 1)];
+        }
+
+        void pollFirst() {
+            first++;
+        }
+
+        void pollLast() {
+            last--;
+        }
+
+        void clear() {
+            first = last;
+        }
+
+        void addLast(long sequence) {
+            if (last - first == items.length) {
+                long[] grown = new long[items.length * 2];
+                for (long i = first; i < last; i++) {
+                    grown[(int) i & (grown.length - 1)] = items[(int) i & (items.length - 1)];
+                }
+                items = grown;
+            }
+            items[(int) last++ & (items.length - 1)] = sequence;
+        }
+    }
+}
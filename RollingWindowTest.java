@@ -0,0 +1,153 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Random;
+
+/**
+ * Feeds two summers of measurements, one per minute, to a window of the last 7 days and compares it every
+ * few hours with the statistics and heat wave of a table of the same days built from scratch. Every result
+ * has to be exactly the same. Then fills a second window from a table that arrives after the newest
+ * measurements, and stops the feed and checks that the days still leave the window. Also prints the time of adding one measurement and of a full rescan.
+ */
+public class RollingWindowTest {
+    private static final int DAYS = 7;
+    private static final int VALUES = 2 * 120 * 24 * 60;
+    private static final int CHECK_EVERY = 6 * 60;
+
+    // Today for the window, follows the measurements that are fed to it
+    private static LocalDateTime now;
+
+    public static void main(String[] args) {
+        MeasurementTable source = new MeasurementTable(VALUES);
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2022, 6, 1, 0, 0);
+        for (int i = 0; i < VALUES; i++) {
+            // Hot spells of a few days, so heat waves come into the window and expire again
+            double celsius = 22 + 7 * Math.sin(i * 2 * Math.PI / (11 * 24 * 60)) + 5 * Math.sin(i * 2 * Math.PI / (24 * 60)) + random.nextGaussian();
+            RawMeasurement raw = new RawMeasurement();
+            raw.setStationId("1");
+            // A day without measurements now and then
+            raw.setDateStamp(start.plusMinutes(i + (i / (17 * 24 * 60)) * 24 * 60));
+            raw.setBarometer((short) (29500 + random.nextInt(1000)));
+            raw.setInsideTemp((short) (680 + random.nextInt(40)));
+            raw.setOutsideTemp((short) Math.round((celsius * 1.8 + 32) * 10));
+            raw.setOutsideHum((short) (60 + random.nextInt(40)));
+            raw.setWindSpeed((short) random.nextInt(20));
+            raw.setRainRate((short) (random.nextInt(10) < 8 ? 0 : random.nextInt(50)));
+            raw.setSunrise((short) (600 + random.nextInt(60)));
+            raw.setSunset((short) (1700 + random.nextInt(60)));
+            source.add(raw);
+        }
+        RawMeasurement[] measurements = new RawMeasurement[VALUES];
+        for (int row = 0; row < VALUES; row++) {
+            measurements[row] = source.getRawMeasurement(row);
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return zone;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return now.atZone(zone).toInstant();
+            }
+        };
+        RollingWindow window = new RollingWindow(DAYS, clock);
+        boolean equal = true;
+        int checks = 0;
+        int heatWaves = 0;
+        long incremental = 0;
+        long rescan = 0;
+        for (int row = 0; row < VALUES; row++) {
+            now = measurements[row].getDateStamp();
+            long time = System.nanoTime();
+            window.add(measurements[row]);
+            incremental += System.nanoTime() - time;
+            if (row % CHECK_EVERY != 0) continue;
+
+            time = System.nanoTime();
+            MeasurementTable table = lastDays(source, row);
+            Analytics.HeatWave heatWave = new Analytics.HeatWave();
+            Analytics.scan(new DailySummary(table), heatWave);
+            boolean expectedHeatWave = heatWave.finish();
+            for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+                StatisticsAccumulator expected = table.getStatistics(channel);
+                StatisticsAccumulator actual = window.getStatistics(channel);
+                equal &= expected.getCount() == actual.getCount() && expected.getMean() == actual.getMean()
+                        && expected.getMin() == actual.getMin() && expected.getMax() == actual.getMax()
+                        && expected.getVariance() == actual.getVariance();
+            }
+            rescan += System.nanoTime() - time;
+            equal &= expectedHeatWave == window.hasHeatWave() && table.size() == window.size()
+                    && table.getDateStamp(0).toLocalDate().equals(window.getBegin());
+            checks++;
+            if (expectedHeatWave) heatWaves++;
+        }
+        System.out.println("Window equal to rescan: " + equal + " (" + checks + " checks, " + heatWaves + " with a heat wave)");
+
+        // The table of the last days arrives after the feed already added the newest measurements
+        RollingWindow late = new RollingWindow(DAYS, clock);
+        for (int row = VALUES - 3 * 60; row < VALUES; row++) {
+            late.add(measurements[row]);
+        }
+        late.addAll(lastDays(source, VALUES - 2 * 60));
+        boolean filled = late.size() == window.size() && late.getBegin().equals(window.getBegin())
+                && late.hasHeatWave() == window.hasHeatWave();
+        for (int channel = 0; channel < MeasurementTable.CHANNELS; channel++) {
+            StatisticsAccumulator expected = window.getStatistics(channel);
+            StatisticsAccumulator actual = late.getStatistics(channel);
+            filled &= expected.getCount() == actual.getCount() && expected.getMean() == actual.getMean()
+                    && expected.getMin() == actual.getMin() && expected.getMax() == actual.getMax()
+                    && expected.getVariance() == actual.getVariance();
+        }
+        System.out.println("Table after newer measurements equal: " + filled);
+
+        // No new measurements for a few days, the oldest days expire anyway
+        LocalDateTime last = now;
+        now = last.plusDays(3);
+        LocalDate firstDay = now.toLocalDate().minusDays(DAYS);
+        boolean stalled = !window.getBegin().isBefore(firstDay)
+                && window.size() == lastDays(source, VALUES - 1).size() - countBefore(source, firstDay);
+        now = last.plusDays(DAYS + 1);
+        stalled &= window.size() == 0 && window.getBegin() == null && !window.hasHeatWave()
+                && window.getStatistics(MeasurementTable.OUTSIDE_TEMP).getCount() == 0;
+        System.out.println("Days expire while the feed stalls: " + stalled);
+        System.out.printf("add %.3f us per measurement, rescan %.3f ms per refresh\n",
+                incremental / 1e3 / VALUES, rescan / 1e6 / checks);
+    }
+
+    /**
+     * The number of rows of the last days of the source before a day
+     */
+    private static int countBefore(MeasurementTable source, LocalDate day) {
+        MeasurementTable table = lastDays(source, VALUES - 1);
+        int count = 0;
+        while (count < table.size() && table.getDateStamp(count).toLocalDate().isBefore(day)) count++;
+        return count;
+    }
+
+    /**
+     * The rows of the last days up to a row, the way a Period of the same days would load them
+     */
+    private static MeasurementTable lastDays(MeasurementTable source, int last) {
+        long firstDay = source.getDateStamp(last).toLocalDate().minusDays(DAYS).toEpochDay();
+        int first = last;
+        while (first > 0 && source.getDateStamp(first - 1).toLocalDate().toEpochDay() >= firstDay) first--;
+
+        MeasurementTable table = new MeasurementTable(last - first + 1);
+        for (int row = first; row <= last; row++) {
+            table.add(source.getRawMeasurement(row));
+        }
+        return table;
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * Exact counting histogram of raw sensor values. The station sends quantized shorts, so a channel only has a
+ * few hundred distinct values in practice. Counting them gives the exact median and mode without sorting,
+ * and histograms of separate chunks or time buckets are merged by adding the counts.
+ */
+public class ShortHistogram {
+    private long[] counts = new long[0];
+    private int base;
+    private long count;
+
+    /**
+     * Counts one value
+     */
+    public void add(short value) {
+        ensureRange(value);
+        counts[value - base]++;
+        count++;
+    }
+
+    /**
+     * Counts the first values of a column
+     *
+     * @param column the values, like a MeasurementTable column
+     * @param size   the number of values to count
+     */
+    public void addAll(short[] column, int size) {
+        addAll(column, 0, size);
+    }
+
+    /**
+     * Counts a range of a column
+     *
+     * @param column the values, like a MeasurementTable column
+     * @param from   the first value to count
+     * @param to     the index after the last value to count
+     */
+    public void addAll(short[] column, int from, int to) {
+        if (to <= from) return;
+
+        short min = column[from];
+        short max = column[from];
+        for (int i = from + 1; i < to; i++) {
+            if (column[i] < min) min = column[i];
+            if (column[i] > max) max = column[i];
+        }
+        ensureRange(min);
+        ensureRange(max);
+
+        for (int i = from; i < to; i++) {
+            counts[column[i] - base]++;
+        }
+        count += to - from;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one
+     *
+     * @param other the histogram to merge
+     * @return this histogram
+     */
+    public ShortHistogram merge(ShortHistogram other) {
+        if (other.count == 0) return this;
+
+        ensureRange(other.base);
+        ensureRange(other.base + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[other.base + i - base] += other.counts[i];
+        }
+        count += other.count;
+        return this;
+    }
+
+    private void ensureRange(int value) {
+        if (counts.length == 0) {
+            counts = new long[16];
+            base = value;
+        } else if (value < base) {
+            int grow = Math.max(base - value, counts.length / 2);
+            long[] grown = new long[counts.length + grow];
+            System.arraycopy(counts, 0, grown, grow, counts.length);
+            counts = grown;
+            base -= grow;
+        } else if (value - base >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(value - base + 1, counts.length + counts.length / 2));
+        }
+    }
+
+    /**
+     * @return the number of values counted
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param value a raw value
+     * @return how often the value has been counted
+     */
+    public long getCount(short value) {
+        int index = value - base;
+        return index >= 0 && index < counts.length ? counts[index] : 0;
+    }
+
+    /**
+     * @return the lowest value counted, 0 if nothing has been counted
+     */
+    public short getMin() {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) return (short) (base + i);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the highest value counted, 0 if nothing has been counted
+     */
+    public short getMax() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) return (short) (base + i);
+        }
+        return 0;
+    }
+
+    /**
+     * @param rank a position in the sorted values, from 0 to {@link #getCount()} - 1
+     * @return the value at that position
+     */
+    public short getValueAt(long rank) {
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) return (short) (base + i);
+        }
+        return getMax();
+    }
+
+    /**
+     * @return the value counted most often, the lowest one if there are several. 0 if nothing has been counted
+     */
+    public short getMode() {
+        int mode = 0;
+        for (int i = 1; i < counts.length; i++) {
+            if (counts[i] > counts[mode]) mode = i;
+        }
+        return counts.length > 0 ? (short) (base + mode) : 0;
+    }
+
+    /**
+     * Calls the consumer for every value that has been counted, lowest first
+     */
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) consumer.accept((short) (base + i), counts[i]);
+        }
+    }
+
+    public interface Consumer {
+        void accept(short value, long count);
+    }
+}
@@ -0,0 +1,314 @@
+import java.util.Arrays;
+
+/**
+ * Collects count, mean, minimum, maximum and variance of a series of values in a single pass, using
+ * Welford's algorithm so the variance does not need a second pass over the values. Statistics restored from
+ * sums, see {@link #of(long, double, double, double, double)}, do not use Welford's algorithm.
+ * <p>
+ * Median and mode need the values in order. {@link #of(double[])} sorts one copy of the values and takes
+ * all statistics from that copy, the values passed in are never changed. Raw sensor values can be counted in a
+ * {@link ShortHistogram} instead, which gives the exact median and mode without sorting. For very large series
+ * {@link #approximate()} estimates median and mode with a {@link QuantileSketch} and a {@link FrequencySketch},
+ * which can be merged across chunks with {@link #combine(StatisticsAccumulator)}.
+ */
+public class StatisticsAccumulator {
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private double median = Double.NaN;
+    private double mode = Double.NaN;
+
+    private QuantileSketch quantiles;
+    private FrequencySketch frequencies;
+
+    /**
+     * Creates statistics without median and mode
+     */
+    public StatisticsAccumulator() {
+    }
+
+    /**
+     * Creates statistics that estimate median and mode with sketches
+     *
+     * @param k        the size of the quantile sketch, see {@link QuantileSketch}
+     * @param counters the number of counters of the frequency sketch, see {@link FrequencySketch}
+     */
+    public StatisticsAccumulator(int k, int counters) {
+        quantiles = new QuantileSketch(k);
+        frequencies = new FrequencySketch(counters);
+    }
+
+    /**
+     * @return statistics that estimate median and mode with sketches of the default size
+     */
+    public static StatisticsAccumulator approximate() {
+        return new StatisticsAccumulator(QuantileSketch.DEFAULT_K, FrequencySketch.DEFAULT_COUNTERS);
+    }
+
+    /**
+     * Calculates all statistics of the values, estimating median and mode without sorting
+     *
+     * @param values the values, they are not changed
+     * @return the statistics of the values
+     */
+    public static StatisticsAccumulator approximate(double[] values) {
+        StatisticsAccumulator statistics = approximate();
+        if (values != null) statistics.acceptAll(values);
+        return statistics;
+    }
+
+    /**
+     * Calculates all statistics from a histogram of raw values, without sorting
+     *
+     * @param histogram the raw values
+     * @param converter conversion to real world values, it must never give a lower value for a higher raw value
+     * @return the exact statistics of the converted values
+     */
+    public static StatisticsAccumulator of(ShortHistogram histogram, MeasurementTable.Converter converter) {
+        StatisticsAccumulator statistics = new StatisticsAccumulator();
+        if (histogram.getCount() < 1) return statistics;
+
+        // Every distinct value is added with its count at once, like Welford's update for a block of equal values
+        histogram.forEach((value, count) -> {
+            double converted = converter.convert(value);
+            long total = statistics.count + count;
+            double delta = converted - statistics.mean;
+            statistics.mean += delta * count / total;
+            statistics.m2 += delta * delta * statistics.count * count / total;
+            statistics.count = total;
+        });
+        statistics.min = converter.convert(histogram.getMin());
+        statistics.max = converter.convert(histogram.getMax());
+        statistics.mode = converter.convert(histogram.getMode());
+
+        long mid = histogram.getCount() / 2;
+        double upper = converter.convert(histogram.getValueAt(mid));
+        statistics.median = histogram.getCount() % 2 == 0 ? (converter.convert(histogram.getValueAt(mid - 1)) + upper) / 2 : upper;
+        return statistics;
+    }
+
+    /**
+     * Calculates all statistics of the values, including median and mode
+     *
+     * @param values the values, they are not changed
+     * @return the statistics of the values
+     */
+    public static StatisticsAccumulator of(double[] values) {
+        StatisticsAccumulator statistics = new StatisticsAccumulator();
+        if (values == null || values.length < 1) return statistics;
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        // Equal values are next to each other, so the mode is the longest run
+        int longest = 0;
+        int run = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            statistics.accept(sorted[i]);
+            run = i > 0 && Double.compare(sorted[i], sorted[i - 1]) == 0 ? run + 1 : 1;
+            if (run > longest) {
+                longest = run;
+                statistics.mode = sorted[i];
+            }
+        }
+
+        int mid = sorted.length / 2;
+        statistics.median = sorted.length % 2 == 0 ? (sorted[mid] + sorted[mid - 1]) / 2 : sorted[mid];
+        return statistics;
+    }
+
+    /**
+     * Restores statistics from sums, like the ones kept by {@link Aggregate}. Median and mode are not available.
+     * The variance is sumOfSquares - sum * mean, which loses precision when the spread is very small compared
+     * to the mean. Sums of raw integer values are exact, {@link MeasurementTable} restores those in the raw
+     * domain with {@link #ofMoments(long, double, double, double, double)}.
+     *
+     * @param count        the number of values
+     * @param sum          the sum of the values
+     * @param sumOfSquares the sum of the squares of the values
+     * @param min          the lowest value
+     * @param max          the highest value
+     * @return the statistics of the values
+     */
+    public static StatisticsAccumulator of(long count, double sum, double sumOfSquares, double min, double max) {
+        StatisticsAccumulator statistics = new StatisticsAccumulator();
+        if (count < 1) return statistics;
+
+        statistics.count = count;
+        statistics.mean = sum / count;
+        // Rounding can make the difference slightly negative when all values are equal
+        statistics.m2 = Math.max(sumOfSquares - sum * statistics.mean, 0);
+        statistics.min = min;
+        statistics.max = max;
+        return statistics;
+    }
+
+    /**
+     * Restores statistics from the mean and the sum of squared differences from the mean
+     *
+     * @param count the number of values
+     * @param mean  the mean of the values
+     * @param m2    the sum of the squared differences from the mean, count times the variance
+     * @param min   the lowest value
+     * @param max   the highest value
+     * @return the statistics of the values, without median and mode
+     */
+    public static StatisticsAccumulator ofMoments(long count, double mean, double m2, double min, double max) {
+        StatisticsAccumulator statistics = new StatisticsAccumulator();
+        if (count < 1) return statistics;
+
+        statistics.count = count;
+        statistics.mean = mean;
+        statistics.m2 = m2;
+        statistics.min = min;
+        statistics.max = max;
+        return statistics;
+    }
+
+    /**
+     * Takes median and mode from other statistics of the same values, like the exact ones of a {@link ShortHistogram}
+     *
+     * @param other statistics of the same values
+     * @return these statistics
+     */
+    public StatisticsAccumulator withMedianAndMode(StatisticsAccumulator other) {
+        median = other.median;
+        mode = other.mode;
+        return this;
+    }
+
+    /**
+     * Adds a value to the statistics. Median and mode are not available for values added this way.
+     *
+     * @param value the value to add
+     */
+    public void accept(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) min = value;
+        if (value > max) max = value;
+        if (quantiles != null) {
+            quantiles.accept(value);
+            frequencies.accept(value);
+        }
+    }
+
+    /**
+     * Adds all values to the statistics
+     *
+     * @param values the values to add
+     */
+    public void acceptAll(double[] values) {
+        for (double value : values) {
+            accept(value);
+        }
+    }
+
+    /**
+     * Merges the statistics of another part of the values into these statistics. Median and mode of the
+     * merged statistics are only available when both have sketches.
+     *
+     * @param other the statistics of the other values
+     * @return these statistics
+     */
+    public StatisticsAccumulator combine(StatisticsAccumulator other) {
+        if (quantiles != null && other.quantiles != null) {
+            quantiles.merge(other.quantiles);
+            frequencies.merge(other.frequencies);
+        } else if (other.count > 0) {
+            quantiles = null;
+            frequencies = null;
+        }
+
+        if (other.count == 0) return this;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            median = other.median;
+            mode = other.mode;
+            return this;
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        median = Double.NaN;
+        mode = Double.NaN;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean, 0 if there are no values
+     */
+    public double getMean() {
+        return count > 0 ? mean : 0;
+    }
+
+    /**
+     * @return the lowest value, 0 if there are no values
+     */
+    public double getMin() {
+        return count > 0 ? min : 0;
+    }
+
+    /**
+     * @return the highest value, 0 if there are no values
+     */
+    public double getMax() {
+        return count > 0 ? max : 0;
+    }
+
+    /**
+     * @return the population variance, 0 if there are no values
+     */
+    public double getVariance() {
+        return count > 0 ? m2 / count : 0;
+    }
+
+    /**
+     * @return the population standard deviation, 0 if there are no values
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return the median, 0 if there are no values, NaN if it is not available
+     */
+    public double getMedian() {
+        if (count > 0 && quantiles != null) return quantiles.getQuantile(0.5);
+        return count > 0 ? median : 0;
+    }
+
+    /**
+     * @return true if median and mode are estimated with sketches
+     */
+    public boolean isApproximate() {
+        return quantiles != null;
+    }
+
+    /**
+     * @return the value that occurs most often, the lowest one if there are several.
+     * 0 if there are no values, NaN if it is not available
+     */
+    public double getMode() {
+        if (count > 0 && frequencies != null) return frequencies.getMode();
+        return count > 0 ? mode : 0;
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares the statistics shown by StatsAction, calculated with the Period static methods on a boxed list,
+ * against a single StatisticsAccumulator on a primitive array. Uses a year of outside temperatures with
+ * one measurement per minute, rounded to a tenth of a degree like the real values.
+ */
+public class StatisticsBenchmark {
+    private static final int VALUES = 365 * 24 * 60;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    private static double sink;
+
+    public static void main(String[] args) {
+        double[] values = new double[VALUES];
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++) {
+            double temperature = 10 + 10 * Math.sin(i * 2 * Math.PI / VALUES) + 5 * Math.sin(i * 2 * Math.PI / (24 * 60)) + random.nextGaussian();
+            values[i] = Math.round(temperature * 10) / 10.0;
+        }
+
+        ArrayList<Double> list = new ArrayList<>(VALUES);
+        for (double value : values) {
+            list.add(value);
+        }
+
+        StatisticsAccumulator statistics = StatisticsAccumulator.of(values);
+        System.out.printf("mean     %.6f %.6f\n", Period.mean(list), statistics.getMean());
+        System.out.printf("median   %.6f %.6f\n", Period.median(list), statistics.getMedian());
+        System.out.printf("mode     %.6f %.6f\n", Period.mode(list), statistics.getMode());
+        System.out.printf("highest  %.6f %.6f\n", Period.highest(list), statistics.getMax());
+        System.out.printf("lowest   %.6f %.6f\n", Period.lowest(list), statistics.getMin());
+        System.out.printf("std dev  %.6f %.6f\n", Period.standardDeviation(list), statistics.getStandardDeviation());
+
+        for (int round = 0; round < 2; round++) {
+            System.out.printf("Period:                %.2f ms/op\n", run(() -> {
+                // StatsAction used to get a fresh list from Period.getValues every time
+                ArrayList<Double> numbers = new ArrayList<>(VALUES);
+                for (double value : values) {
+                    numbers.add(value);
+                }
+                sink += Period.mean(numbers) + Period.median(numbers) + Period.mode(numbers)
+                        + Period.highest(numbers) + Period.lowest(numbers) + Period.standardDeviation(numbers);
+            }));
+            System.out.printf("StatisticsAccumulator: %.2f ms/op\n", run(() -> {
+                StatisticsAccumulator s = StatisticsAccumulator.of(values);
+                sink += s.getMean() + s.getMedian() + s.getMode() + s.getMax() + s.getMin() + s.getStandardDeviation();
+            }));
+            System.out.printf("Welford only:          %.2f ms/op\n", run(() -> {
+                StatisticsAccumulator s = new StatisticsAccumulator();
+                s.acceptAll(values);
+                sink += s.getMean() + s.getMax() + s.getMin() + s.getStandardDeviation();
+            }));
+        }
+        System.out.printf("checksum %.3f\n", sink);
+    }
+
+    private static double run(Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
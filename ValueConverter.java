@@ -1,7 +1,43 @@
 import java.time.LocalTime;
 
+/**
+ * Conversion of the raw values of the Vantage Pro2 to real world units. The raw values are quantized shorts,
+ * so the conversions of the values a sensor reports in practice are calculated once into lookup tables.
+ * Values outside a table are calculated with the formula, the results are the same either way.
+ */
 public class ValueConverter {
 
+    // Raw ranges of the lookup tables
+    private static final int TEMPERATURE_MIN = -1500;
+    private static final int TEMPERATURE_MAX = 1500;
+    private static final int FAHRENHEIT_MIN = TEMPERATURE_MIN / 10;
+    private static final int FAHRENHEIT_MAX = TEMPERATURE_MAX / 10;
+    private static final int HUMIDITY_MAX = 100;
+    private static final int WIND_SPEED_MAX = 255;
+    private static final int WIND_CHILL_SPEED_MAX = 55;
+
+    private static final LookupTable temperatures = new LookupTable(TEMPERATURE_MIN, TEMPERATURE_MAX, fahrenheit -> ((fahrenheit / 10.0) - 32) / 1.8);
+    private static final LookupTable airPressures = new LookupTable(20000, Short.MAX_VALUE, inchOfMercury -> (inchOfMercury / 1000.0) / 0.029530);
+    private static final LookupTable windSpeeds = new LookupTable(0, WIND_SPEED_MAX, windMiles -> windMiles * 0.44704);
+    private static final LookupTable rainMeters = new LookupTable(0, 4095, rainInches -> (rainInches / 100.0) * 25.4);
+    private static final LookupTable uvLevels = new LookupTable(0, 255, uv -> uv / 10.0);
+    private static final LookupTable batteryLevels = new LookupTable(0, 1023, rawValue -> ((rawValue * 300.0) / 512));
+
+    // Heat index and wind chill by whole degrees Fahrenheit, which is all the formulas use
+    private static final double[] heatIndices = new double[(FAHRENHEIT_MAX - FAHRENHEIT_MIN + 1) * (HUMIDITY_MAX + 1)];
+    private static final double[] windCools = new double[(FAHRENHEIT_MAX - FAHRENHEIT_MIN + 1) * (WIND_CHILL_SPEED_MAX + 1)];
+
+    static {
+        for (int fahrenheit = FAHRENHEIT_MIN; fahrenheit <= FAHRENHEIT_MAX; fahrenheit++) {
+            for (short humidity = 0; humidity <= HUMIDITY_MAX; humidity++) {
+                heatIndices[(fahrenheit - FAHRENHEIT_MIN) * (HUMIDITY_MAX + 1) + humidity] = heatIndex(fahrenheit, humidity);
+            }
+            for (short windMiles = 0; windMiles <= WIND_CHILL_SPEED_MAX; windMiles++) {
+                windCools[(fahrenheit - FAHRENHEIT_MIN) * (WIND_CHILL_SPEED_MAX + 1) + windMiles] = windCool(fahrenheit, windMiles);
+            }
+        }
+    }
+
     /**
      * airPressure
      *
@@ -9,7 +45,7 @@ public class ValueConverter {
      * @return in hecto Pascal / hPa
      */
     public static double airPressure(short inchOfMercuryRaw) {
-        return (inchOfMercuryRaw / 1000.0) / 0.029530;
+        return airPressures.get(inchOfMercuryRaw);
     }
 
     /**
@@ -62,7 +98,7 @@ public class ValueConverter {
      * @return The amount of rain in mm
      */
     public static double rainMeter(short rainInches) {
-        return (rainInches / 100.0) * 25.4;
+        return rainMeters.get(rainInches);
     }
 
     /**
@@ -72,7 +108,7 @@ public class ValueConverter {
      * @return Windspeed in meters per second
      */
     public static double windSpeed(short windMiles) {
-        return windMiles * 0.44704;
+        return windSpeeds.get(windMiles);
     }
 
     /**
@@ -82,8 +118,7 @@ public class ValueConverter {
      * @return UV level
      */
     public static double uvLevel(short uv) {
-
-        return uv / 10.0;
+        return uvLevels.get(uv);
     }
 
     /**
@@ -103,7 +138,7 @@ public class ValueConverter {
      * @return output in percentages
      */
     public static double batteryLevel(short rawValue) {
-        return ((rawValue * 300.0) / 512);
+        return batteryLevels.get(rawValue);
     }
 
     /**
@@ -113,8 +148,7 @@ public class ValueConverter {
      * @return Temperature in Celcius
      */
     public static double temperature(short fahrenheit) {
-
-        return ((fahrenheit / 10.0) - 32) / 1.8;
+        return temperatures.get(fahrenheit);
     }
 
     /**
@@ -149,11 +183,16 @@ public class ValueConverter {
      * @return windChill in °C
      */
     public static double windChill(short temperature, short windMiles) {
-        if (windMiles > 55) {
-            windMiles = 55;
+        if (windMiles > WIND_CHILL_SPEED_MAX) {
+            windMiles = WIND_CHILL_SPEED_MAX;
         }
         int fahrenheit = (temperature / 10);
-        double windcool = ((0.0817 * (3.71 * (Math.pow(windMiles, 0.5)) + 5.81 - (0.25 * windMiles)) * (fahrenheit - 91.4) + 91.4) - 32) / 1.8;
+        double windcool;
+        if (fahrenheit >= FAHRENHEIT_MIN && fahrenheit <= FAHRENHEIT_MAX && windMiles >= 0) {
+            windcool = windCools[(fahrenheit - FAHRENHEIT_MIN) * (WIND_CHILL_SPEED_MAX + 1) + windMiles];
+        } else {
+            windcool = windCool(fahrenheit, windMiles);
+        }
         if (windcool > temperature(temperature)) {
             return temperature(temperature);
         } else {
@@ -161,6 +200,10 @@ public class ValueConverter {
         }
     }
 
+    private static double windCool(int fahrenheit, short windMiles) {
+        return ((0.0817 * (3.71 * (Math.pow(windMiles, 0.5)) + 5.81 - (0.25 * windMiles)) * (fahrenheit - 91.4) + 91.4) - 32) / 1.8;
+    }
+
     /**
      * Heat index
      *
@@ -169,6 +212,14 @@ public class ValueConverter {
      * @return heatIndex in °C
      */
     public static double heatIndex(short temperature, short humidity) {
+        int fahrenheit = (temperature / 10);
+        if (fahrenheit >= FAHRENHEIT_MIN && fahrenheit <= FAHRENHEIT_MAX && humidity >= 0 && humidity <= HUMIDITY_MAX) {
+            return heatIndices[(fahrenheit - FAHRENHEIT_MIN) * (HUMIDITY_MAX + 1) + humidity];
+        }
+        return heatIndex(fahrenheit, humidity);
+    }
+
+    private static double heatIndex(int fahrenheit, short humidity) {
 
         double C1 = -42.379;
         double C2 = 2.04901523;
@@ -179,10 +230,139 @@ public class ValueConverter {
         double C7 = 1.22874E-3;
         double C8 = 8.5282E-4;
         double C9 = -1.99E-6;
-        int fahrenheit = (temperature / 10);
         double heat = C1 + (C2 * fahrenheit) + (C3 * humidity) + (C4 * fahrenheit * humidity) + (C5 * Math.pow(fahrenheit, 2)) + (C6 * Math.pow(humidity, 2)) + (C7 * Math.pow(fahrenheit, 2) * humidity) + (C8 * fahrenheit * Math.pow(humidity, 2)) + (C9 * Math.pow(fahrenheit, 2) * Math.pow(humidity, 2));
 
         double heatIndex = (heat - 32) / 1.8;
         return heatIndex;
     }
+
+    /**
+     * Converts a column of temperatures, see {@link #temperature(short)}
+     *
+     * @param in  raw temperatures in °F * 10
+     * @param out receives the temperatures in °C, its length is the number of values converted
+     */
+    public static void convertTemperatures(short[] in, double[] out) {
+        temperatures.convert(in, out);
+    }
+
+    /**
+     * Converts a column of air pressures, see {@link #airPressure(short)}
+     *
+     * @param in  raw air pressures
+     * @param out receives the air pressures in hPa, its length is the number of values converted
+     */
+    public static void convertAirPressures(short[] in, double[] out) {
+        airPressures.convert(in, out);
+    }
+
+    /**
+     * Converts a column of wind speeds, see {@link #windSpeed(short)}
+     *
+     * @param in  raw wind speeds in mph
+     * @param out receives the wind speeds in m/s, its length is the number of values converted
+     */
+    public static void convertWindSpeeds(short[] in, double[] out) {
+        windSpeeds.convert(in, out);
+    }
+
+    /**
+     * Converts a column of rain rates, see {@link #rainMeter(short)}
+     *
+     * @param in  raw rain rates
+     * @param out receives the rain rates in mm, its length is the number of values converted
+     */
+    public static void convertRainMeters(short[] in, double[] out) {
+        rainMeters.convert(in, out);
+    }
+
+    /**
+     * Converts a column of UV levels, see {@link #uvLevel(short)}
+     *
+     * @param in  raw UV levels
+     * @param out receives the UV levels, its length is the number of values converted
+     */
+    public static void convertUvLevels(short[] in, double[] out) {
+        uvLevels.convert(in, out);
+    }
+
+    /**
+     * Converts a column of battery levels, see {@link #batteryLevel(short)}
+     *
+     * @param in  raw battery levels
+     * @param out receives the battery levels in percentages, its length is the number of values converted
+     */
+    public static void convertBatteryLevels(short[] in, double[] out) {
+        batteryLevels.convert(in, out);
+    }
+
+    /**
+     * Converts a column of values that are passed on unchanged, like the humidity, wind direction and solar radiation
+     *
+     * @param in  raw values
+     * @param out receives the values, its length is the number of values converted
+     */
+    public static void convertUnchanged(short[] in, double[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = in[i];
+        }
+    }
+
+    /**
+     * Calculates the heat index of two columns, see {@link #heatIndex(short, short)}
+     *
+     * @param temperatures raw temperatures in °F * 10
+     * @param humidities   outside relative humidities
+     * @param out          receives the heat indices in °C, its length is the number of values converted
+     */
+    public static void convertHeatIndices(short[] temperatures, short[] humidities, double[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = heatIndex(temperatures[i], humidities[i]);
+        }
+    }
+
+    /**
+     * Calculates the wind chill of two columns, see {@link #windChill(short, short)}
+     *
+     * @param temperatures raw temperatures in °F * 10
+     * @param windSpeeds   wind speeds in mph
+     * @param out          receives the wind chills in °C, its length is the number of values converted
+     */
+    public static void convertWindChills(short[] temperatures, short[] windSpeeds, double[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = windChill(temperatures[i], windSpeeds[i]);
+        }
+    }
+
+    /**
+     * The conversion of every raw value in a range, calculated once
+     */
+    private static final class LookupTable {
+        private final int first;
+        private final double[] values;
+        private final MeasurementTable.Converter formula;
+
+        LookupTable(int first, int last, MeasurementTable.Converter formula) {
+            this.first = first;
+            this.formula = formula;
+            values = new double[last - first + 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = formula.convert((short) (first + i));
+            }
+        }
+
+        double get(short raw) {
+            int index = raw - first;
+            return index >= 0 && index < values.length ? values[index] : formula.convert(raw);
+        }
+
+        void convert(short[] in, double[] out) {
+            double[] values = this.values;
+            int first = this.first;
+            for (int i = 0; i < out.length; i++) {
+                int index = in[i] - first;
+                out[i] = index >= 0 && index < values.length ? values[index] : formula.convert(in[i]);
+            }
+        }
+    }
 }
@@ -0,0 +1,108 @@
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Compares converting a year of columns, one measurement per minute, with the formulas value by value,
+ * with the lookup tables value by value and with the bulk conversion of ValueConverter. Also checks that
+ * every conversion gives exactly the same values.
+ */
+public class ValueConverterBenchmark {
+    private static final int VALUES = 365 * 24 * 60;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    private static double sink;
+
+    public static void main(String[] args) {
+        MeasurementTable table = new MeasurementTable(VALUES);
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++) {
+            double celsius = 10 + 10 * Math.sin(i * 2 * Math.PI / VALUES) + 5 * Math.sin(i * 2 * Math.PI / (24 * 60)) + 2 * random.nextGaussian();
+            RawMeasurement raw = new RawMeasurement();
+            raw.setStationId("1");
+            raw.setDateStamp(LocalDateTime.of(2023, 1, 1, 0, 0).plusMinutes(i));
+            raw.setBarometer((short) (29500 + random.nextInt(1000)));
+            raw.setOutsideTemp((short) Math.round((celsius * 1.8 + 32) * 10));
+            raw.setOutsideHum((short) (60 + random.nextInt(40)));
+            raw.setWindSpeed((short) random.nextInt(20));
+            raw.setRainRate((short) (random.nextInt(10) < 8 ? 0 : random.nextInt(50)));
+            table.add(raw);
+        }
+
+        int[] channels = {MeasurementTable.OUTSIDE_TEMP, MeasurementTable.BAROMETER, MeasurementTable.WIND_SPEED, MeasurementTable.RAIN_RATE};
+        MeasurementTable.Converter[] formulas = {
+                fahrenheit -> ((fahrenheit / 10.0) - 32) / 1.8,
+                inchOfMercury -> (inchOfMercury / 1000.0) / 0.029530,
+                windMiles -> windMiles * 0.44704,
+                rainInches -> (rainInches / 100.0) * 25.4
+        };
+        for (int i = 0; i < channels.length; i++) {
+            check("channel " + channels[i], table.toDoubles(channels[i], formulas[i]), table.toDoubles(channels[i]));
+        }
+        check("heat index", table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.OUTSIDE_HUM, ValueConverterBenchmark::heatIndex),
+                table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.OUTSIDE_HUM, ValueConverter::convertHeatIndices));
+        check("wind chill", table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.WIND_SPEED, ValueConverterBenchmark::windChill),
+                table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.WIND_SPEED, ValueConverter::convertWindChills));
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < channels.length; i++) {
+                int channel = channels[i];
+                MeasurementTable.Converter formula = formulas[i];
+                System.out.printf("channel %2d  formula %6.3f ms, table %6.3f ms, bulk %6.3f ms\n", channel,
+                        run(() -> sink += table.toDoubles(channel, formula)[0]),
+                        run(() -> sink += table.toDoubles(channel, MeasurementTable.getConverter(channel))[0]),
+                        run(() -> sink += table.toDoubles(channel)[0]));
+            }
+            System.out.printf("heat index  formula %6.3f ms, table %6.3f ms, bulk %6.3f ms\n",
+                    run(() -> sink += table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.OUTSIDE_HUM, ValueConverterBenchmark::heatIndex)[0]),
+                    run(() -> sink += table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.OUTSIDE_HUM, ValueConverter::heatIndex)[0]),
+                    run(() -> sink += table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.OUTSIDE_HUM, ValueConverter::convertHeatIndices)[0]));
+            System.out.printf("wind chill  formula %6.3f ms, table %6.3f ms, bulk %6.3f ms\n",
+                    run(() -> sink += table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.WIND_SPEED, ValueConverterBenchmark::windChill)[0]),
+                    run(() -> sink += table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.WIND_SPEED, ValueConverter::windChill)[0]),
+                    run(() -> sink += table.toDoubles(MeasurementTable.OUTSIDE_TEMP, MeasurementTable.WIND_SPEED, ValueConverter::convertWindChills)[0]));
+        }
+        System.out.printf("checksum %.3f\n", sink);
+    }
+
+    private static void check(String name, double[] expected, double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if (Double.doubleToLongBits(expected[i]) != Double.doubleToLongBits(actual[i])) {
+                System.out.printf("%s differs at %d: %f/%f\n", name, i, expected[i], actual[i]);
+                return;
+            }
+        }
+        System.out.printf("%s: %d values equal\n", name, expected.length);
+    }
+
+    private static double run(Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+
+    // The formulas as ValueConverter calculated them for every value
+
+    private static double windChill(short temperature, short windMiles) {
+        if (windMiles > 55) {
+            windMiles = 55;
+        }
+        int fahrenheit = (temperature / 10);
+        double windcool = ((0.0817 * (3.71 * (Math.pow(windMiles, 0.5)) + 5.81 - (0.25 * windMiles)) * (fahrenheit - 91.4) + 91.4) - 32) / 1.8;
+        double celsius = ((temperature / 10.0) - 32) / 1.8;
+        return windcool > celsius ? celsius : windcool;
+    }
+
+    private static double heatIndex(short temperature, short humidity) {
+        int fahrenheit = (temperature / 10);
+        double heat = -42.379 + (2.04901523 * fahrenheit) + (10.14333127 * humidity) + (-0.22475541 * fahrenheit * humidity)
+                + (-.00683783 * Math.pow(fahrenheit, 2)) + (-5.481717E-2 * Math.pow(humidity, 2)) + (1.22874E-3 * Math.pow(fahrenheit, 2) * humidity)
+                + (8.5282E-4 * fahrenheit * Math.pow(humidity, 2)) + (-1.99E-6 * Math.pow(fahrenheit, 2) * Math.pow(humidity, 2));
+        return (heat - 32) / 1.8;
+    }
+}
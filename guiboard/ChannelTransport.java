@@ -0,0 +1,194 @@
+package guiboard;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends IO requests over a non-blocking SocketChannel from a dedicated thread. Callers only put requests in a
+ * queue: writes return at once, reads complete a future when their answer arrives. The thread sends everything
+ * that is queued in one write, and matches the answers to the requests in the order they were sent.
+ */
+class ChannelTransport implements Runnable {
+    private static final short READ = 0;
+    private static final int REQUEST_SIZE = 6;
+    // Answers are expected within 2 seconds, like the blocking socket
+    private static final long TIMEOUT = 2000;
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger batchDepth = new AtomicInteger();
+    private volatile boolean open = true;
+
+    // Only used by the IO thread
+    private final ArrayDeque<Request> sent = new ArrayDeque<>();
+    private final ByteBuffer output = ByteBuffer.allocateDirect(REQUEST_SIZE * 1024);
+    private final ByteBuffer input = ByteBuffer.allocateDirect(2 * 1024);
+
+    private static class Request {
+        final short IOCode;
+        final short address;
+        final short value;
+        // Null for writes, their answer is skipped
+        final CompletableFuture<Short> answer;
+
+        Request(short IOCode, short address, short value, CompletableFuture<Short> answer) {
+            this.IOCode = IOCode;
+            this.address = address;
+            this.value = value;
+            this.answer = answer;
+        }
+    }
+
+    /**
+     * Connects and starts the IO thread
+     */
+    ChannelTransport(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        key = channel.register(selector, SelectionKey.OP_READ);
+        output.flip();
+
+        Thread thread = new Thread(this, "guiboard IO");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a request. Writes return at once, reads wait for their answer.
+     *
+     * @return the answer of a read, 0 if there is no answer in time, -1 if the connection is closed
+     */
+    short request(short IOCode, short address, short value) {
+        if (IOCode != READ) {
+            queue.add(new Request(IOCode, address, value, null));
+            if (!open) failQueued();
+            else if (batchDepth.get() == 0) selector.wakeup();
+            return 0;
+        }
+
+        try {
+            return read(address).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException | ExecutionException | TimeoutException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Queues a read
+     *
+     * @return the answer, -1 if the connection is closed
+     */
+    CompletableFuture<Short> read(short address) {
+        CompletableFuture<Short> answer = new CompletableFuture<>();
+        queue.add(new Request(READ, address, (short) 0, answer));
+        if (!open) failQueued();
+        else selector.wakeup();
+        return answer;
+    }
+
+    /**
+     * Writes queued in a batch are only sent at the end of it, or with the next read
+     */
+    void beginBatch() {
+        batchDepth.incrementAndGet();
+    }
+
+    void endBatch() {
+        if (batchDepth.updateAndGet(depth -> Math.max(depth - 1, 0)) == 0)
+            selector.wakeup();
+    }
+
+    void close() {
+        open = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (open) {
+                selector.select();
+                selector.selectedKeys().clear();
+                if (!open) break;
+                receive();
+                send();
+            }
+        }
+        catch (IOException e) {
+            // no errors plz. e.printStackTrace();
+        }
+        finally {
+            open = false;
+            try {
+                channel.close();
+                selector.close();
+            }
+            catch (IOException e) {
+                // no errors plz. e.printStackTrace();
+            }
+            // Requests that were sent will never be answered, the ones still queued are not sent
+            for (Request request : sent) {
+                if (request.answer != null)
+                    request.answer.complete((short) 0);
+            }
+            sent.clear();
+            failQueued();
+        }
+    }
+
+    private void receive() throws IOException {
+        if (channel.read(input) < 0)
+            throw new EOFException();
+        input.flip();
+        while (input.remaining() >= 2) {
+            short answer = input.getShort();
+            Request request = sent.poll();
+            if (request != null && request.answer != null)
+                request.answer.complete(answer);
+        }
+        input.compact();
+    }
+
+    private void send() throws IOException {
+        // Everything that is queued goes out in as few writes as possible
+        output.compact();
+        Request request;
+        while (output.remaining() >= REQUEST_SIZE && (request = queue.poll()) != null) {
+            output.putShort(request.IOCode);
+            output.putShort(request.address);
+            output.putShort(request.value);
+            sent.add(request);
+        }
+        output.flip();
+        channel.write(output);
+
+        boolean more = output.hasRemaining() || !queue.isEmpty();
+        key.interestOps(more ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void failQueued() {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            if (request.answer != null)
+                request.answer.complete((short) -1);
+        }
+    }
+}
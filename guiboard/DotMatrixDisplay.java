@@ -3,6 +3,12 @@ package guiboard;
 import java.util.Arrays;
 import java.util.function.DoubleUnaryOperator;
 
+/**
+ * Text and pixels on the dot matrix display. Text is written into an off-screen screen with {@link #clear()} and
+ * {@link #writeLine(String)}, pixels are drawn into an off-screen frame with {@link #drawPixel(int, int, boolean)},
+ * and {@link #flush()} sends only what differs from the display. Pixels can also be set on the display one at a
+ * time with {@link #setPixel(int, int, boolean)}.
+ */
 public class DotMatrixDisplay {
     private final short pixelAddress;
     private final short textAddress;
@@ -11,6 +17,11 @@ public class DotMatrixDisplay {
     private static final int LINELENGTH = 21;
     private static final int MAXLINES = 3;
 
+    // Text commands follow this prefix
+    private static final int COMMAND = 0xFE;
+    private static final int CLEAR_DISPLAY = 0x01;
+    private static final int CURSOR_HOME = 0x02;
+
     private int currentLine;
 
     private static class Opcodes {
@@ -20,9 +31,19 @@ public class DotMatrixDisplay {
         public static final int CLEARALL = 3;
     }
 
-    private final boolean[][] lastState;
+    // One int per column of at most 32 pixels, pixel (x, y) is bit y of column x
+    private final int[] lastState;
     private boolean lastStateKnown;
 
+    // The off-screen frame, in the same layout
+    private final int[] frame;
+
+    // The off-screen text and the text on the display, which is only known with the pixels
+    private final String[] lines;
+    private final String[] lastLines;
+    // The line of the cursor on the display, -1 when it is not known
+    private int cursorLine;
+
 
     /**
      * @param pixelAddress Address used for writing to individual pixels.
@@ -40,8 +61,15 @@ public class DotMatrixDisplay {
         this.width = width;
         this.currentLine = 0;
 
-        this.lastState = new boolean[width][height];
+        this.lastState = new int[width];
         this.lastStateKnown = false;
+        this.frame = new int[width];
+
+        this.lines = new String[MAXLINES];
+        this.lastLines = new String[MAXLINES];
+        Arrays.fill(lines, "");
+        Arrays.fill(lastLines, "");
+        this.cursorLine = -1;
     }
 
     /**
@@ -55,13 +83,90 @@ public class DotMatrixDisplay {
         if (y > 0b11111 || x > 0b1111111)
             throw new IllegalArgumentException(Integer.toBinaryString(x) + ":" + Integer.toBinaryString(y));
 
-        if (!lastStateKnown || lastState[x][y] != state) {
+        int bit = 1 << y;
+        if (!lastStateKnown || ((lastState[x] & bit) != 0) != state) {
             writeInstruction(state ? Opcodes.SET : Opcodes.CLEAR, x, y);
-            lastState[x][y] = state;
+            lastState[x] = state ? lastState[x] | bit : lastState[x] & ~bit;
         }
+        frame[x] = state ? frame[x] | bit : frame[x] & ~bit;
+    }
+
+    /**
+     * Set or clear specified pixel in the off-screen frame. The display changes at the next {@link #flush()}.
+     *
+     * @param x     X coordinate of pixel.
+     * @param y     Y coordinate of pixel.
+     * @param state State of pixel to set (true for on, false for off).
+     */
+    public void drawPixel(int x, int y, boolean state) {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            throw new IllegalArgumentException(x + ":" + y);
+
+        int bit = 1 << y;
+        frame[x] = state ? frame[x] | bit : frame[x] & ~bit;
+    }
+
+    /**
+     * Clears all pixels of the off-screen frame.
+     */
+    public void clearFrame() {
+        Arrays.fill(frame, 0);
     }
 
     /**
+     * Shows the off-screen text and frame. Only the lines and pixels that differ from the display are sent. When
+     * it takes fewer writes, the display is cleared first and only the text and pixels that are not empty are
+     * sent: with CLEARALL if there is no text, or with a text clear otherwise. All writes go out at once.
+     */
+    public void flush() {
+        // A whole column is compared at once, the set bits of the XOR are the pixels that differ
+        int changed = 0;
+        int on = 0;
+        for (int x = 0; x < width; x++) {
+            changed += lastStateKnown ? Integer.bitCount(frame[x] ^ lastState[x]) : height;
+            on += Integer.bitCount(frame[x]);
+        }
+        int writes = lastStateKnown ? changed + writeText(false, false) : Integer.MAX_VALUE;
+        if (writes == 0) return;
+
+        // CLEARALL also removes the text, but does not move the cursor
+        boolean noText = lastStateKnown && isBlank(lines) && isBlank(lastLines);
+        boolean redraw = noText && 1 + on < changed;
+        boolean clearText = !redraw && 2 + writeText(false, true) + on < writes;
+        IO.beginBatch();
+        try {
+            if (redraw) {
+                writeInstruction(Opcodes.CLEARALL, 0, 0);
+                Arrays.fill(lastState, 0);
+                lastStateKnown = true;
+            } else if (clearText) {
+                IO.writeShort(textAddress, COMMAND);
+                IO.writeShort(textAddress, CLEAR_DISPLAY);
+                Arrays.fill(lastState, 0);
+                Arrays.fill(lastLines, "");
+                cursorLine = 0;
+                lastStateKnown = true;
+            }
+            writeText(true, false);
+            int column = height == 32 ? -1 : (1 << height) - 1;
+            for (int x = 0; x < width; x++) {
+                int changes = lastStateKnown ? frame[x] ^ lastState[x] : column;
+                while (changes != 0) {
+                    int y = Integer.numberOfTrailingZeros(changes);
+                    changes &= changes - 1;
+                    writeInstruction((frame[x] >>> y & 1) != 0 ? Opcodes.SET : Opcodes.CLEAR, x, y);
+                }
+                lastState[x] = frame[x];
+            }
+            lastStateKnown = true;
+        } finally {
+            IO.endBatch();
+        }
+    }
+
+    /**
+     * Draws the graph over the off-screen frame and shows the frame, see {@link #flush()}.
+     *
      * @param fn     Function used to plot the graph.
      * @param xScale Scale of the x-axis.
      * @param yScale Scale of the y-axis
@@ -69,10 +174,10 @@ public class DotMatrixDisplay {
      */
     public void plotGraph(DoubleUnaryOperator fn, double xScale, double yScale, double step) {
         for (int x = 0; x < width; x++) {
-            setPixel(x, height / 2, true);
+            drawPixel(x, height / 2, true);
         }
         for (int y = 0; y < height; y++) {
-            setPixel(width / 2, y, true);
+            drawPixel(width / 2, y, true);
         }
 
         for (double x = 0; x < width; x += step) {
@@ -80,23 +185,75 @@ public class DotMatrixDisplay {
                     ((x - (width / 2.0)) * xScale)
             ) * yScale) + height / 2;
             if (y < height && y >= 0)
-                setPixel((int) x, y, true);
+                drawPixel((int) x, y, true);
         }
+        flush();
+    }
 
+    /**
+     * Writes the lines that differ from the display, or counts the writes that would take
+     *
+     * @param send    false to only count
+     * @param cleared count as if the display has just been cleared
+     * @return the number of writes
+     */
+    private int writeText(boolean send, boolean cleared) {
+        int writes = 0;
+        int cursor = cleared ? 0 : cursorLine;
+        for (int line = 0; line < MAXLINES; line++) {
+            String text = lines[line];
+            String shown = cleared ? "" : lastLines[line];
+            // Characters after the last one that differs stay as they are, a shorter line is padded with spaces
+            int end = Math.max(text.length(), shown.length());
+            while (end > 0 && charAt(text, end - 1) == charAt(shown, end - 1)) end--;
+            if (end == 0) continue;
+
+            // A newline only moves the cursor to the start of the next line
+            if (cursor < 0 || cursor > line) {
+                writes += 2;
+                if (send) {
+                    IO.writeShort(textAddress, COMMAND);
+                    IO.writeShort(textAddress, CURSOR_HOME);
+                }
+                cursor = 0;
+            }
+            writes += line - cursor + end + 1;
+            if (send) {
+                for (; cursor < line; cursor++) {
+                    IO.writeShort(textAddress, '\n');
+                }
+                for (int i = 0; i < end; i++) {
+                    IO.writeShort(textAddress, charAt(text, i));
+                }
+                IO.writeShort(textAddress, '\n');
+                lastLines[line] = text;
+            }
+            cursor = line + 1;
+        }
+        if (send) cursorLine = cursor;
+        return writes;
+    }
+
+    private static char charAt(String s, int index) {
+        return index < s.length() ? s.charAt(index) : ' ';
+    }
+
+    private static boolean isBlank(String[] lines) {
+        for (String line : lines) {
+            if (!line.isBlank()) return false;
+        }
+        return true;
     }
 
     /**
-     * Write a line of text to the dotmatrix display.
+     * Write a line of text to the off-screen text. The display changes at the next {@link #flush()}.
      *
      * @param s Text to write to the display.
      */
     public void writeLine(String s) {
         if (s.length() > LINELENGTH) throw new IllegalArgumentException();
         if (currentLine > MAXLINES - 1) throw new IllegalStateException();
-        for (char c : s.toCharArray()) {
-            IO.writeShort(textAddress, c);
-        }
-        IO.writeShort(textAddress, '\n');
+        lines[currentLine] = s;
         this.currentLine++;
     }
 
@@ -116,17 +273,13 @@ public class DotMatrixDisplay {
     }
 
     /**
-     * Clears dot matrix display and resets cursor position.
+     * Clears the off-screen text and frame, the next line is written on the first line again. The display
+     * changes at the next {@link #flush()}.
      */
     public void clear() {
-        // Use text address to clear display, because CLEARALL opcode does not reset cursor.
-        IO.writeShort(textAddress, 0xFE);
-        IO.writeShort(textAddress, 0x01);
+        Arrays.fill(lines, "");
         this.currentLine = 0;
-
-        for (boolean[] row : lastState)
-            Arrays.fill(row, false);
-        lastStateKnown = true;
+        Arrays.fill(frame, 0);
     }
 
     /**
@@ -11,6 +11,7 @@ package guiboard;//
 
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.CompletableFuture;
 
 public class IO {
   public static String host = "localhost";
@@ -65,6 +66,76 @@ public class IO {
     remoteIO( (short) 1, (short) address, (short) value);
   }
 
+  /**
+   * Asynchronous transport.
+   * With asynchronous set before init(), requests are queued for a dedicated
+   * I/O thread on a non-blocking SocketChannel, instead of waiting on one lock
+   * and one blocking socket. Writes return at once, readShortAsync() returns
+   * the answer as a future. Requests are still handled in the order they were made.
+   **/
+  public static boolean asynchronous = false;
+
+  /**
+   * Read a short value (16-bits) from an I/O port, without waiting for it.
+   * @param  address port address (16-bits)
+   * @return short value (16-bits), already completed without the asynchronous transport
+   **/
+  public static CompletableFuture<Short> readShortAsync(int address) {
+    ChannelTransport transport = IO.transport;
+    if (transport != null)
+      return transport.read((short) address);
+    return CompletableFuture.completedFuture(readShort(address));
+  }
+
+  /**
+   * Batching.
+   * Between beginBatch() and endBatch() writes are not sent one at a time, but
+   * queued and sent to the server together in one TCP write. Batches can be nested,
+   * only the outermost endBatch() sends the queued writes. A read always sends the
+   * queued writes first, so it sees their effect.
+   * The server acknowledges every write. endBatch() waits for all acknowledgements
+   * at once. With pipelined set it does not wait, the acknowledgements are skipped
+   * at the next read, and writes outside a batch do not wait either.
+   **/
+  public static boolean pipelined = false;
+
+  public static void beginBatch() {
+    ChannelTransport transport = IO.transport;
+    if (transport != null)
+      transport.beginBatch();
+    else
+      beginBlockingBatch();
+  }
+
+  public static void endBatch() {
+    ChannelTransport transport = IO.transport;
+    if (transport != null)
+      transport.endBatch();
+    else
+      endBlockingBatch();
+  }
+
+  private static synchronized void beginBlockingBatch() {
+    batchDepth++;
+  }
+
+  private static synchronized void endBlockingBatch() {
+    if (batchDepth == 0)
+      return;
+    batchDepth--;
+    if (batchDepth == 0 && client != null) {
+      try {
+        output.flush();
+        if (!pipelined)
+          readAcknowledgements();
+      }
+      catch (Exception e) {
+        // no errors plz. e.printStackTrace();
+        pendingAcknowledgements = 0;
+      }
+    }
+  }
+
   /**
    * Wait a specified time. The routine uses Thread.sleep so below 20 ms
    * timing becomes very erraneous, but works fine for longer times
@@ -87,8 +158,19 @@ public class IO {
   private static Socket client = null;
   private static DataOutputStream output = null;
   private static DataInputStream input = null;
+  private static volatile ChannelTransport transport = null;
+
+  // The server can only queue so many unread acknowledgements before it stops reading
+  private static final int MAX_PENDING = 1024;
+  private static final byte[] acknowledgements = new byte[2 * MAX_PENDING];
+  private static int batchDepth = 0;
+  private static int pendingAcknowledgements = 0;
 
   private static void closeConnectionToServer() {
+    if (transport != null) {
+      transport.close();
+      transport = null;
+    }
     try {
       if (output != null)
         output.close();
@@ -104,6 +186,17 @@ public class IO {
 
   private static boolean startConnectionToServer() {
     closeConnectionToServer(); // close any pending connection
+    pendingAcknowledgements = 0;
+    if (asynchronous) {
+      try {
+        transport = new ChannelTransport(host, port);
+      }
+      catch (IOException e) {
+        //e.printStackTrace();
+        return false;
+      }
+      return true;
+    }
     try {
       client = new Socket(InetAddress.getByName(host), port);
       client.setSoTimeout(2000); // we expect answers within 2 seconds
@@ -120,7 +213,14 @@ public class IO {
     return true;
   }
 
-  synchronized private static short remoteIO(short IOCode, short address, short value) {
+  private static short remoteIO(short IOCode, short address, short value) {
+    ChannelTransport transport = IO.transport;
+    if (transport != null)
+      return transport.request(IOCode, address, value);
+    return blockingIO(IOCode, address, value);
+  }
+
+  synchronized private static short blockingIO(short IOCode, short address, short value) {
     if (client == null)
       return (short) - 1;
 
@@ -129,12 +229,29 @@ public class IO {
       output.writeShort(IOCode);
       output.writeShort(address);
       output.writeShort(value);
+      if (IOCode == 1 && (batchDepth > 0 || pipelined)) {
+        // The acknowledgement is read later, all of them at once
+        pendingAcknowledgements++;
+        if (batchDepth == 0 || pendingAcknowledgements == MAX_PENDING) {
+          output.flush();
+          if (pendingAcknowledgements == MAX_PENDING)
+            readAcknowledgements();
+        }
+        return readvalue;
+      }
       output.flush();
+      readAcknowledgements();
       readvalue = input.readShort();
     }
     catch (Exception e) {
       // no errors plz. e.printStackTrace();
+      pendingAcknowledgements = 0;
     }
     return readvalue;
   }
+
+  private static void readAcknowledgements() throws IOException {
+    input.readFully(acknowledgements, 0, 2 * pendingAcknowledgements);
+    pendingAcknowledgements = 0;
+  }
 }
\ No newline at end of file
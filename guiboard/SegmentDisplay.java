@@ -64,9 +64,11 @@ public class SegmentDisplay {
      * Clear all segments of the display.
      */
     public void clear() {
+        IO.beginBatch();
         for (short address : addresses) {
             IO.writeShort(address, 0x100);
         }
+        IO.endBatch();
     }
 
     /**
@@ -88,9 +90,11 @@ public class SegmentDisplay {
      */
     public void writeRaw(short[] values) {
         int length = Math.min(values.length, addresses.length);
+        IO.beginBatch();
         for (int i = 0; i < length; i++) {
             IO.writeShort(addresses[i], values[i]);
         }
+        IO.endBatch();
     }
 
     /**
@@ -194,6 +198,8 @@ public class SegmentDisplay {
         if (number > (Math.pow(10, (segments - (negative ? 1 : 0))) - 1))
             throw new IllegalArgumentException("Number too large for display");
 
+        // All segments go out in one write
+        IO.beginBatch();
         int digits = 0;
         for (int i = 0; i < segments; i++) {
             if (number != 0 || leadingZero || i == 0) {
@@ -206,6 +212,7 @@ public class SegmentDisplay {
         if (negative) {
             writeRaw(MINUS, leadingZero ? segments - 1 : digits);
         }
+        IO.endBatch();
     }
 
     /**
@@ -224,8 +231,13 @@ public class SegmentDisplay {
 
         if (sigDigits == -1) sigDigits = maxSigDigits;
 
-        writeNumber((int) (number * Math.pow(10, sigDigits)), leadingZero, clearDisplay);
-        writeRaw((short) (readRaw(sigDigits) | DOT), sigDigits);
+        IO.beginBatch();
+        try {
+            writeNumber((int) (number * Math.pow(10, sigDigits)), leadingZero, clearDisplay);
+            writeRaw((short) (readRaw(sigDigits) | DOT), sigDigits);
+        } finally {
+            IO.endBatch();
+        }
     }
 
     /**
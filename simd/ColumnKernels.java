@@ -0,0 +1,74 @@
+package simd;
+
+/**
+ * Bulk kernels over a raw short column, for conversions of the form raw * scale + offset and for the
+ * reductions the statistics need. {@link #get()} gives the SIMD kernels of the incubating Vector API when
+ * they are available, and plain loops otherwise.
+ * <p>
+ * The SIMD kernels are only used when VectorColumnKernels has been compiled and the module is added,
+ * both for javac and java: {@code --add-modules jdk.incubator.vector}. Without it the class is skipped.
+ */
+public abstract class ColumnKernels {
+
+    // Indices of the result of reduce
+    public static final int SUM = 0;
+    public static final int SUM_OF_SQUARES = 1;
+    public static final int MIN = 2;
+    public static final int MAX = 3;
+    public static final int RESULT_SIZE = 4;
+
+    private static final ColumnKernels scalar = new ScalarColumnKernels();
+    private static final ColumnKernels best = load();
+
+    private static ColumnKernels load() {
+        try {
+            return (ColumnKernels) Class.forName("simd.VectorColumnKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // Not compiled, the module is not added or the hardware has no usable vector shape
+            return scalar;
+        }
+    }
+
+    /**
+     * @return the fastest kernels available in this JVM
+     */
+    public static ColumnKernels get() {
+        return best;
+    }
+
+    /**
+     * @return the kernels with plain loops, always available
+     */
+    public static ColumnKernels scalar() {
+        return scalar;
+    }
+
+    /**
+     * @return true if these kernels use SIMD instructions
+     */
+    public abstract boolean isVectorized();
+
+    /**
+     * Converts the first values of a column with out[i] = in[i] * scale + offset
+     *
+     * @param in     the raw values
+     * @param length the number of values to convert
+     * @param scale  the factor of every raw value
+     * @param offset added after scaling
+     * @param out    receives the converted values
+     */
+    public abstract void convert(short[] in, int length, double scale, double offset, double[] out);
+
+    /**
+     * Sums a range of a column, and the squares, and finds the lowest and highest value. The raw values are
+     * whole numbers, so the sums are exact as long as they stay below 2^53, in any order and for any split
+     * of the column.
+     *
+     * @param in     the raw values
+     * @param from   the first value to reduce
+     * @param to     the index after the last value to reduce, after from
+     * @param result receives the sum, sum of squares, lowest and highest value at {@link #SUM},
+     *               {@link #SUM_OF_SQUARES}, {@link #MIN} and {@link #MAX}
+     */
+    public abstract void reduce(short[] in, int from, int to, double[] result);
+}
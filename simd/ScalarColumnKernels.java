@@ -0,0 +1,38 @@
+package simd;
+
+/**
+ * The kernels as plain loops, used when the Vector API is not available
+ */
+class ScalarColumnKernels extends ColumnKernels {
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public void convert(short[] in, int length, double scale, double offset, double[] out) {
+        for (int i = 0; i < length; i++) {
+            out[i] = in[i] * scale + offset;
+        }
+    }
+
+    @Override
+    public void reduce(short[] in, int from, int to, double[] result) {
+        long sum = 0;
+        long sumOfSquares = 0;
+        int min = in[from];
+        int max = in[from];
+        for (int i = from; i < to; i++) {
+            int value = in[i];
+            sum += value;
+            sumOfSquares += (long) value * value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        result[SUM] = sum;
+        result[SUM_OF_SQUARES] = sumOfSquares;
+        result[MIN] = min;
+        result[MAX] = max;
+    }
+}
@@ -0,0 +1,78 @@
+package simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels with the incubating Vector API. Every lane of raw shorts is widened to a lane of doubles, so
+ * the short species has as many lanes as the preferred double species. Loaded by {@link ColumnKernels#get()}
+ * only, it needs {@code --add-modules jdk.incubator.vector}.
+ */
+class VectorColumnKernels extends ColumnKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // Throws when the double vectors have less than 4 lanes, there is no short vector that small
+    private static final VectorSpecies<Short> SHORTS = VectorSpecies.of(short.class, VectorShape.forBitSize(DOUBLES.length() * Short.SIZE));
+
+    private final ColumnKernels tail = ColumnKernels.scalar();
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    private static DoubleVector load(short[] in, int i) {
+        return (DoubleVector) ShortVector.fromArray(SHORTS, in, i).convertShape(VectorOperators.S2D, DOUBLES, 0);
+    }
+
+    @Override
+    public void convert(short[] in, int length, double scale, double offset, double[] out) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            load(in, i).fma(scale, offset).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = in[i] * scale + offset;
+        }
+    }
+
+    @Override
+    public void reduce(short[] in, int from, int to, double[] result) {
+        int bound = from + DOUBLES.loopBound(to - from);
+        if (bound == from) {
+            tail.reduce(in, from, to, result);
+            return;
+        }
+
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        DoubleVector sumOfSquares = DoubleVector.zero(DOUBLES);
+        DoubleVector min = load(in, from);
+        DoubleVector max = min;
+        for (int i = from; i < bound; i += DOUBLES.length()) {
+            DoubleVector values = load(in, i);
+            sum = sum.add(values);
+            sumOfSquares = values.fma(values, sumOfSquares);
+            min = min.min(values);
+            max = max.max(values);
+        }
+
+        double totalSum = sum.reduceLanes(VectorOperators.ADD);
+        double totalSumOfSquares = sumOfSquares.reduceLanes(VectorOperators.ADD);
+        double lowest = min.reduceLanes(VectorOperators.MIN);
+        double highest = max.reduceLanes(VectorOperators.MAX);
+        for (int i = bound; i < to; i++) {
+            double value = in[i];
+            totalSum += value;
+            totalSumOfSquares += value * value;
+            lowest = Math.min(lowest, value);
+            highest = Math.max(highest, value);
+        }
+        result[SUM] = totalSum;
+        result[SUM_OF_SQUARES] = totalSumOfSquares;
+        result[MIN] = lowest;
+        result[MAX] = highest;
+    }
+}